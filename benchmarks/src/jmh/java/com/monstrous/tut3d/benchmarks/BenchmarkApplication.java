@@ -0,0 +1,22 @@
+package com.monstrous.tut3d.benchmarks;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+
+
+// headless libGDX application for the benchmarks, so that Gdx.app, Gdx.files etc. are available
+// there is no GL context, the benchmarks use the world in headless mode and models without GPU resources
+public class BenchmarkApplication {
+
+    public static void init() {
+        if(Gdx.app != null)
+            return;
+        HeadlessApplicationConfiguration configuration = new HeadlessApplicationConfiguration();
+        configuration.updatesPerSecond = -1;        // no render loop, the benchmarks call the code directly
+        new HeadlessApplication(new ApplicationAdapter() {}, configuration);
+        Gdx.app.setLogLevel(Application.LOG_ERROR);
+    }
+}
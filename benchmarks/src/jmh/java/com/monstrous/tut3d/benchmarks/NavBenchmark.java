@@ -0,0 +1,86 @@
+package com.monstrous.tut3d.benchmarks;
+
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.tut3d.Settings;
+import com.monstrous.tut3d.nav.NavMesh;
+import com.monstrous.tut3d.nav.NavMeshBuilder;
+import com.monstrous.tut3d.nav.NavNode;
+import com.monstrous.tut3d.nav.NavStringPuller;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+// nav mesh building and queries on a synthetic nav mesh of size x size cells (see SyntheticNavMesh)
+// the queries cycle through a fixed set of random points, so that each run does the same work.
+// There are more query pairs than the path cache holds, so findNodePath searches rather than hitting the cache.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NavBenchmark {
+    static final int NUM_QUERIES = 4096;
+
+    @Param({ "32", "128", "256" })
+    public int size;
+
+    private SyntheticNavMesh synthetic;
+    private NavMesh navMesh;
+    private Vector3[] points;
+    private NavNode[] nodes;                // node under each point
+    private Array<NavNode>[] nodePaths;     // from point i to point i+1
+    private final Array<NavNode> nodePath = new Array<>();
+    private final Array<Vector3> pointPath = new Array<>();
+    private final NavStringPuller stringPuller = new NavStringPuller();
+    private int query;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        BenchmarkApplication.init();
+        synthetic = new SyntheticNavMesh(size);
+        navMesh = NavMeshBuilder.build(synthetic.positions, synthetic.indices);
+        navMesh.buildData();
+        points = synthetic.randomPoints(NUM_QUERIES, 1234);
+        nodes = new NavNode[NUM_QUERIES];
+        for(int i = 0; i < NUM_QUERIES; i++)
+            nodes[i] = navMesh.findNode(points[i], Settings.navHeight);
+        nodePaths = new Array[NUM_QUERIES];
+        for(int i = 0; i < NUM_QUERIES; i++) {
+            nodePaths[i] = new Array<>();
+            navMesh.findNodePath(nodes[i], nodes[(i+1) % NUM_QUERIES], nodePaths[i]);
+        }
+        navMesh.getPathCache().clear();
+    }
+
+    private int nextQuery() {
+        query = (query + 1) % NUM_QUERIES;
+        return query;
+    }
+
+    @Benchmark
+    public NavMesh build() {
+        NavMesh mesh = NavMeshBuilder.build(synthetic.positions, synthetic.indices);
+        mesh.buildData();
+        return mesh;
+    }
+
+    @Benchmark
+    public NavNode findNode() {
+        return navMesh.findNode(points[nextQuery()], Settings.navHeight);
+    }
+
+    @Benchmark
+    public Array<NavNode> findNodePath() {
+        int i = nextQuery();
+        navMesh.findNodePath(nodes[i], nodes[(i+1) % NUM_QUERIES], nodePath);
+        return nodePath;
+    }
+
+    @Benchmark
+    public Array<Vector3> makePath() {
+        int i = nextQuery();
+        stringPuller.makePath(points[i], points[(i+1) % NUM_QUERIES], nodePaths[i], pointPath);
+        return pointPath;
+    }
+}
@@ -0,0 +1,132 @@
+package com.monstrous.tut3d.benchmarks;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.graphics.g3d.model.MeshPart;
+import com.badlogic.gdx.graphics.g3d.model.Node;
+import com.badlogic.gdx.graphics.g3d.model.NodePart;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.tut3d.Settings;
+import com.monstrous.tut3d.physics.CollisionShapeType;
+import com.monstrous.tut3d.physics.PhysicsBody;
+import com.monstrous.tut3d.physics.PhysicsBodyFactory;
+import com.monstrous.tut3d.physics.PhysicsWorld;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+// physics update of a scene with a number of bodies on a ground box, without a game world
+// a third of the bodies are characters (capsules that never go to sleep) that walk towards the centre, like the cooks
+// chasing the player, so that the scene keeps colliding. The others are balls and boxes that are pushed around.
+// The scene is rebuilt for each iteration, so that each iteration starts from the same state.
+// The bodies are created without debug models, so they need no GL context.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PhysicsBenchmark {
+    static final float DELTA_TIME = 1/60f;
+    static final float SPACING = 2f;
+
+    @Param({ "16", "128", "512" })
+    public int numBodies;
+
+    private Model ground, ball, box, capsule;
+    private PhysicsWorld physicsWorld;
+    private PhysicsBodyFactory factory;
+    private final Array<PhysicsBody> characters = new Array<>();
+    private final Vector3 force = new Vector3();
+
+    @Setup(Level.Trial)
+    public void createModels() {
+        BenchmarkApplication.init();
+        ground = createShape(200, 1, 200);
+        ball = createShape(1, 1, 1);
+        box = createShape(1, 1, 1);
+        capsule = createShape(1, 2, 1);
+    }
+
+    // the factory only needs the bounding box of these shapes, so a model of the corners of the box will do
+    // the mesh is a vertex array in memory rather than a vertex buffer object, so no GL context is needed
+    private static Model createShape( float w, float h, float d ) {
+        float[] corners = new float[3*8];
+        for(int i = 0; i < 8; i++) {
+            corners[3*i] = (i & 1) == 0 ? -w/2 : w/2;
+            corners[3*i+1] = (i & 2) == 0 ? -h/2 : h/2;
+            corners[3*i+2] = (i & 4) == 0 ? -d/2 : d/2;
+        }
+        Mesh mesh = new Mesh(Mesh.VertexDataType.VertexArray, true, 8, 0, VertexAttribute.Position());
+        mesh.setVertices(corners);
+        Model model = new Model();
+        MeshPart meshPart = new MeshPart("shape", mesh, 0, 8, GL20.GL_POINTS);
+        Node node = new Node();
+        node.id = "shape";
+        node.parts.add(new NodePart(meshPart, new Material()));
+        model.nodes.add(node);
+        model.meshes.add(mesh);
+        model.meshParts.add(meshPart);
+        model.manageDisposable(mesh);
+        return model;
+    }
+
+    @Setup(Level.Iteration)
+    public void createScene() {
+        physicsWorld = new PhysicsWorld(null);
+        factory = new PhysicsBodyFactory(physicsWorld);
+        characters.clear();
+        createBody(ground, CollisionShapeType.BOX, true, 0, -0.5f, 0);
+
+        int perRow = (int)Math.ceil(Math.sqrt(numBodies));
+        for(int i = 0; i < numBodies; i++) {
+            float x = (i % perRow - perRow/2f) * SPACING;
+            float z = (i / perRow - perRow/2f) * SPACING;
+            switch(i % 3) {
+                case 0:
+                    PhysicsBody character = createBody(capsule, CollisionShapeType.CAPSULE, false, x, 1.1f, z);
+                    character.setCapsuleCharacteristics();
+                    characters.add(character);
+                    break;
+                case 1:
+                    createBody(ball, CollisionShapeType.SPHERE, false, x, 3f, z);
+                    break;
+                default:
+                    createBody(box, CollisionShapeType.BOX, false, x, 5f, z);
+                    break;
+            }
+        }
+    }
+
+    private PhysicsBody createBody( Model model, CollisionShapeType shapeType, boolean isStatic, float x, float y, float z ) {
+        ModelInstance instance = new ModelInstance(model, x, y, z);
+        return factory.createBody(instance, shapeType, isStatic);
+    }
+
+    @TearDown(Level.Iteration)
+    public void disposeScene() {
+        factory.dispose();
+        physicsWorld.dispose();
+    }
+
+    @TearDown(Level.Trial)
+    public void disposeModels() {
+        ground.dispose();
+        ball.dispose();
+        box.dispose();
+        capsule.dispose();
+    }
+
+    @Benchmark
+    public void update() {
+        for(PhysicsBody character : characters) {
+            force.set(character.getPosition()).scl(-1).nor().scl(Settings.cookForce);
+            force.y = 0;
+            character.applyForce(force);
+        }
+        physicsWorld.update(DELTA_TIME);
+    }
+}
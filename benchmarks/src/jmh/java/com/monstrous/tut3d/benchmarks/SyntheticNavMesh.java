@@ -0,0 +1,77 @@
+package com.monstrous.tut3d.benchmarks;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.IntArray;
+
+
+// a generated nav mesh of a given size, for benchmarks that should not depend on the level
+// a square grid of size x size cells of two triangles each. Every 8th row of cells is a wall with a gap at alternating
+// ends, so that the paths snake through the level like in a maze. The second half of the level is a ramp, so that
+// paths have slope changes.
+public class SyntheticNavMesh {
+    public static final float CELL_SIZE = 2f;       // in world units
+    public static final int WALL_SPACING = 8;       // cells
+    public static final float RAMP_SLOPE = 0.2f;
+
+    public final int size;
+    public final float[] positions;                 // x, y, z per vertex
+    public final int[] indices;                     // three vertex indices per triangle
+
+    public SyntheticNavMesh( int size ) {
+        this.size = size;
+        positions = new float[3 * (size+1) * (size+1)];
+        for(int z = 0; z <= size; z++) {
+            for(int x = 0; x <= size; x++) {
+                int v = x + (size+1) * z;
+                positions[3*v] = x * CELL_SIZE;
+                positions[3*v+1] = getHeight(x * CELL_SIZE);
+                positions[3*v+2] = z * CELL_SIZE;
+            }
+        }
+        IntArray triangles = new IntArray();
+        for(int z = 0; z < size; z++) {
+            for(int x = 0; x < size; x++) {
+                if(isWall(x, z))
+                    continue;
+                int v00 = x + (size+1) * z;
+                int v10 = v00 + 1;
+                int v01 = v00 + size + 1;
+                int v11 = v01 + 1;
+                triangles.add(v00, v01, v11);       // counter-clockwise seen from above
+                triangles.add(v00, v11, v10);
+            }
+        }
+        indices = triangles.toArray();
+    }
+
+    public boolean isWall( int x, int z ) {
+        if(z % WALL_SPACING != WALL_SPACING-1)
+            return false;
+        boolean gapAtStart = (z / WALL_SPACING) % 2 == 0;
+        return gapAtStart ? x > 1 : x < size-2;
+    }
+
+    // height of the nav mesh, flat in the first half and a ramp in x in the second half
+    public float getHeight( float x ) {
+        return Math.max(0, x - size * CELL_SIZE / 2f) * RAMP_SLOPE;
+    }
+
+    // random points just above the nav mesh, i.e. where a character would be
+    public Vector3[] randomPoints( int count, long seed ) {
+        RandomXS128 random = new RandomXS128(seed);
+        Vector3[] points = new Vector3[count];
+        for(int i = 0; i < count; i++) {
+            int x, z;
+            do {
+                x = random.nextInt(size);
+                z = random.nextInt(size);
+            } while(isWall(x, z));
+            float px = (x + MathUtils.lerp(0.1f, 0.9f, random.nextFloat())) * CELL_SIZE;
+            float pz = (z + MathUtils.lerp(0.1f, 0.9f, random.nextFloat())) * CELL_SIZE;
+            points[i] = new Vector3(px, getHeight(px) + 0.5f, pz);
+        }
+        return points;
+    }
+}
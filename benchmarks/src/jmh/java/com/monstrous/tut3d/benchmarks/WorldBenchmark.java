@@ -0,0 +1,62 @@
+package com.monstrous.tut3d.benchmarks;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Vector3;
+import com.monstrous.tut3d.Assets;
+import com.monstrous.tut3d.GameObjectType;
+import com.monstrous.tut3d.Populator;
+import com.monstrous.tut3d.World;
+import com.monstrous.tut3d.nav.NavNode;
+import com.monstrous.tut3d.physics.CollisionShapeType;
+import net.mgsx.gltf.scene3d.scene.SceneModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+// a frame of the game simulation: player controller, physics, nav mesh obstacles, flow field, crowd and behaviours
+// the world runs in headless mode. The level is populated as in the game, with extra enemies spread over the nav mesh
+// to scale up the scene.
+// The level is populated again for each iteration, because the enemies hunt down the player.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WorldBenchmark {
+    static final float DELTA_TIME = 1/60f;
+
+    @Param({ "0", "32", "128" })
+    public int extraEnemies;
+
+    private SceneModel sceneModel;
+    private World world;
+
+    @Setup(Level.Trial)
+    public void loadAssets() {
+        BenchmarkApplication.init();
+        sceneModel = Assets.loadHeadlessScene();
+        world = new World(sceneModel, true);
+    }
+
+    @Setup(Level.Iteration)
+    public void populate() {
+        Populator.populate(world);
+        RandomXS128 random = new RandomXS128(1234);
+        Vector3 position = new Vector3();
+        for(int i = 0; i < extraEnemies; i++) {
+            NavNode node = world.navMesh.navNodes.get(random.nextInt(world.navMesh.navNodes.size));
+            position.set(node.centre).add(0, 1f, 0);
+            world.spawnObject(GameObjectType.TYPE_ENEMY, "cook", "cookProxy", CollisionShapeType.CAPSULE, true, position);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void dispose() {
+        world.dispose();
+        sceneModel.dispose();
+    }
+
+    @Benchmark
+    public void update() {
+        world.update(DELTA_TIME);
+    }
+}
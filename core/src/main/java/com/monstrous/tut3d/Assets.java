@@ -9,6 +9,7 @@ import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.badlogic.gdx.utils.Disposable;
 import net.mgsx.gltf.loaders.gltf.GLTFAssetLoader;
 import net.mgsx.gltf.scene3d.scene.SceneAsset;
+import net.mgsx.gltf.scene3d.scene.SceneModel;
 
 public class Assets implements Disposable {
 
@@ -81,6 +82,13 @@ public class Assets implements Disposable {
         scopeImage = assets.get("images/scope.png");
     }
 
+    // the level as a scene model without GPU resources (see GltfMeshReader.readModel), for a world in headless mode
+    public static SceneModel loadHeadlessScene() {
+        SceneModel sceneModel = new SceneModel();
+        sceneModel.model = new GltfMeshReader(Gdx.files.internal(Settings.GLTF_FILE)).readModel();
+        return sceneModel;
+    }
+
     public <T> T get(String name ) {
         return assets.get(name);
     }
@@ -3,6 +3,8 @@ package com.monstrous.tut3d;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Disposable;
 import com.monstrous.tut3d.behaviours.Behaviour;
+import com.monstrous.tut3d.nav.NavCrowd;
+import com.monstrous.tut3d.nav.NavObstacle;
 import com.monstrous.tut3d.physics.PhysicsBody;
 import net.mgsx.gltf.scene3d.scene.Scene;
 
@@ -15,6 +17,8 @@ public class GameObject implements Disposable {
     public boolean visible;
     public float health;
     public Behaviour behaviour;
+    public NavObstacle navObstacle;         // footprint on the nav mesh for loose objects, else null
+    public NavCrowd.Agent crowdAgent;       // for local avoidance between enemies, else null
 
     public GameObject(GameObjectType type, Scene scene, PhysicsBody body) {
         this.type = type;
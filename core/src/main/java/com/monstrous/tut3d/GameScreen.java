@@ -1,5 +1,6 @@
 package com.monstrous.tut3d;
 
+import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.InputMultiplexer;
@@ -8,6 +9,7 @@ import com.badlogic.gdx.controllers.Controllers;
 import com.badlogic.gdx.math.Vector3;
 import com.monstrous.tut3d.behaviours.CookBehaviour;
 import com.monstrous.tut3d.gui.GUI;
+import com.monstrous.tut3d.inputs.InputRecorder;
 import com.monstrous.tut3d.inputs.MyControllerAdapter;
 import com.monstrous.tut3d.physics.CollisionShapeType;
 import com.monstrous.tut3d.views.GameView;
@@ -32,6 +34,7 @@ public class GameScreen extends ScreenAdapter {
     private boolean navScreen = false;
     private boolean lookThroughScope = false;
     private int windowedWidth, windowedHeight;
+    private InputRecorder inputRecorder;        // null unless recording, see Settings.recordInput
 
     @Override
     public void show() {
@@ -39,6 +42,8 @@ public class GameScreen extends ScreenAdapter {
         world = new World();
         gui = new GUI(world, this);
         Populator.populate(world);
+        if(Settings.recordInput && Gdx.app.getType() != Application.ApplicationType.WebGL)   // no local files on the web
+            inputRecorder = new InputRecorder(Gdx.files.local(Settings.INPUT_RECORDING_FILE));
         gameView = new GameView(world,false, 0.1f, 300f, 1f);
         gameView.getCameraController().setThirdPersonMode(thirdPersonView);
         world.getPlayer().visible = thirdPersonView;            // hide player mesh in first person
@@ -86,6 +91,8 @@ public class GameScreen extends ScreenAdapter {
 
     public void restart() {
         Populator.populate(world);
+        if(inputRecorder != null)
+            inputRecorder.recordRestart();
         world.getPlayer().visible = thirdPersonView;            // hide player mesh in first person
     }
 
@@ -145,6 +152,8 @@ public class GameScreen extends ScreenAdapter {
             scopeOverlay.startRecoilEffect();
         }
 
+        if(inputRecorder != null)
+            inputRecorder.recordFrame(world.getPlayerController(), delta);
         world.update(delta);
 
         float moveSpeed = world.getPlayer().body.getVelocity().len();
@@ -189,5 +198,10 @@ public class GameScreen extends ScreenAdapter {
         world.dispose();
         scopeOverlay.dispose();
         navMeshView.dispose();
+        if(inputRecorder != null) {
+            Gdx.app.log("Input recorded", inputRecorder.getNumFrames() + " frames to " + Settings.INPUT_RECORDING_FILE);
+            inputRecorder.dispose();
+            inputRecorder = null;
+        }
     }
 }
@@ -0,0 +1,272 @@
+package com.monstrous.tut3d;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.model.MeshPart;
+import com.badlogic.gdx.graphics.g3d.model.Node;
+import com.badlogic.gdx.graphics.g3d.model.NodePart;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Base64Coder;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+
+// minimal reader for the triangles of a named node in a .gltf file
+// reads the accessors directly from the json and binary buffers, so it needs no GL context.
+// Like NavMeshBuilder, the node transform is not applied, unless asked for (e.g. for level geometry).
+// It can also read all the nodes into a model without GPU resources, for a world in headless mode.
+
+public class GltfMeshReader {
+    private static final int GL_TRIANGLES = 4;
+    private static final int UNSIGNED_BYTE = 5121;
+    private static final int UNSIGNED_SHORT = 5123;
+    private static final int UNSIGNED_INT = 5125;
+    private static final int FLOAT = 5126;
+
+    private final FileHandle file;
+    private final JsonValue json;
+    private final ByteBuffer[] buffers;
+
+    public float[] positions;       // x, y, z per vertex
+    public int[] indices;           // 3 vertex indices per triangle
+
+    public GltfMeshReader( FileHandle file ) {
+        this.file = file;
+        json = new JsonReader().parse(file);
+        JsonValue buffersJson = json.get("buffers");
+        buffers = new ByteBuffer[buffersJson == null ? 0 : buffersJson.size];
+    }
+
+    // read the first primitive of the mesh of the node with the given name
+    public void readNode( String nodeName ) {
+        readNode(nodeName, false);
+    }
+
+    // read the first primitive of the mesh of the node with the given name
+    // if applyTransform is set the positions are transformed to world space by the node's transform and those of its parents
+    public void readNode( String nodeName, boolean applyTransform ) {
+        JsonValue node = null;
+        for(JsonValue n = json.get("nodes").child; n != null; n = n.next) {
+            if(nodeName.equals(n.getString("name", null)))
+                node = n;
+        }
+        if(node == null || !node.has("mesh"))
+            throw new GdxRuntimeException("Cannot find mesh node in GLTF file: " + nodeName);
+        JsonValue primitive = json.get("meshes").get(node.getInt("mesh")).get("primitives").child;
+        if(primitive.getInt("mode", GL_TRIANGLES) != GL_TRIANGLES)
+            throw new GdxRuntimeException("Nav mesh must be GL_TRIANGLES");
+        readPrimitive(primitive, nodeName);
+        if(applyTransform) {
+            Matrix4 transform = getGlobalTransform(node, new Matrix4());
+            Vector3 p = new Vector3();
+            for(int v = 0; v < positions.length/3; v++) {
+                p.set(positions[3*v], positions[3*v+1], positions[3*v+2]).mul(transform);
+                positions[3*v] = p.x;
+                positions[3*v+1] = p.y;
+                positions[3*v+2] = p.z;
+            }
+        }
+    }
+
+    // read all nodes into a model, with the node hierarchy and transforms as in the file
+    // the meshes only have positions and are kept in memory (vertex arrays rather than vertex buffer objects), so the model
+    // can be made without a GL context. It cannot be rendered: materials, textures and animations are not read.
+    public Model readModel() {
+        Model model = new Model();
+        Material material = new Material();
+        model.materials.add(material);
+        JsonValue nodesJson = json.get("nodes");
+        Node[] nodes = new Node[nodesJson.size];
+        Matrix4 transform = new Matrix4();
+        int index = 0;
+        for(JsonValue n = nodesJson.child; n != null; n = n.next, index++) {
+            Node node = new Node();
+            node.id = n.getString("name", "node" + index);
+            getLocalTransform(n, transform);
+            transform.getTranslation(node.translation);
+            transform.getRotation(node.rotation, true);
+            transform.getScale(node.scale);
+            if(n.has("mesh")) {
+                int part = 0;
+                for(JsonValue primitive = json.get("meshes").get(n.getInt("mesh")).get("primitives").child; primitive != null; primitive = primitive.next) {
+                    if(primitive.getInt("mode", GL_TRIANGLES) != GL_TRIANGLES)
+                        continue;
+                    readPrimitive(primitive, node.id);
+                    MeshPart meshPart = new MeshPart(node.id + "-part" + part++, createMesh(node.id), 0, indices.length, GL20.GL_TRIANGLES);
+                    model.meshes.add(meshPart.mesh);
+                    model.meshParts.add(meshPart);
+                    model.manageDisposable(meshPart.mesh);
+                    node.parts.add(new NodePart(meshPart, material));
+                }
+            }
+            nodes[index] = node;
+        }
+        boolean[] isChild = new boolean[nodes.length];
+        index = 0;
+        for(JsonValue n = nodesJson.child; n != null; n = n.next, index++) {
+            JsonValue children = n.get("children");
+            if(children == null)
+                continue;
+            for(JsonValue child = children.child; child != null; child = child.next) {
+                nodes[index].addChild(nodes[child.asInt()]);
+                isChild[child.asInt()] = true;
+            }
+        }
+        for(int i = 0; i < nodes.length; i++) {
+            if(!isChild[i])
+                model.nodes.add(nodes[i]);
+        }
+        model.calculateTransforms();
+        return model;
+    }
+
+    // a mesh of the positions and indices that were read last
+    private Mesh createMesh( String nodeName ) {
+        int numVertices = positions.length/3;
+        if(numVertices > 65536)         // indices are unsigned short
+            throw new GdxRuntimeException("Too many vertices in node: " + nodeName);
+        Mesh mesh = new Mesh(Mesh.VertexDataType.VertexArray, true, numVertices, indices.length, VertexAttribute.Position());
+        mesh.setVertices(positions);
+        short[] shortIndices = new short[indices.length];
+        for(int i = 0; i < indices.length; i++)
+            shortIndices[i] = (short)indices[i];
+        mesh.setIndices(shortIndices);
+        return mesh;
+    }
+
+    // read the positions and indices of a primitive
+    private void readPrimitive( JsonValue primitive, String nodeName ) {
+        JsonValue positionAccessor = json.get("accessors").get(primitive.get("attributes").getInt("POSITION"));
+        if(positionAccessor.getInt("componentType") != FLOAT || !positionAccessor.getString("type").equals("VEC3"))
+            throw new GdxRuntimeException("Unsupported position format in node: " + nodeName);
+        int numVertices = positionAccessor.getInt("count");
+        positions = new float[3*numVertices];
+        ByteBuffer data = getData(positionAccessor);
+        int base = data.position();
+        int stride = getStride(positionAccessor, 12);
+        for(int v = 0; v < numVertices; v++) {
+            positions[3*v] = data.getFloat(base + v*stride);
+            positions[3*v+1] = data.getFloat(base + v*stride + 4);
+            positions[3*v+2] = data.getFloat(base + v*stride + 8);
+        }
+
+        if(!primitive.has("indices")) {         // non-indexed geometry
+            indices = new int[numVertices];
+            for(int i = 0; i < numVertices; i++)
+                indices[i] = i;
+            return;
+        }
+        JsonValue indexAccessor = json.get("accessors").get(primitive.getInt("indices"));
+        int numIndices = indexAccessor.getInt("count");
+        indices = new int[numIndices];
+        data = getData(indexAccessor);
+        base = data.position();
+        switch(indexAccessor.getInt("componentType")) {
+            case UNSIGNED_BYTE:
+                for(int i = 0; i < numIndices; i++)
+                    indices[i] = data.get(base + i) & 0xFF;
+                break;
+            case UNSIGNED_SHORT:
+                for(int i = 0; i < numIndices; i++)
+                    indices[i] = data.getShort(base + 2*i) & 0xFFFF;
+                break;
+            case UNSIGNED_INT:
+                for(int i = 0; i < numIndices; i++)
+                    indices[i] = data.getInt(base + 4*i);
+                break;
+            default:
+                throw new GdxRuntimeException("Unsupported index type in node: " + nodeName);
+        }
+    }
+
+    // node transform combined with the transforms of its parents
+    private Matrix4 getGlobalTransform( JsonValue node, Matrix4 transform ) {
+        getLocalTransform(node, transform);
+        Matrix4 parentTransform = new Matrix4();
+        for(JsonValue parent = getParent(node); parent != null; parent = getParent(parent))
+            transform.mulLeft(getLocalTransform(parent, parentTransform));
+        return transform;
+    }
+
+    private Matrix4 getLocalTransform( JsonValue node, Matrix4 transform ) {
+        if(node.has("matrix"))
+            return transform.set(node.get("matrix").asFloatArray());      // column major, like Matrix4
+        Vector3 translation = new Vector3();
+        Quaternion rotation = new Quaternion();
+        Vector3 scale = new Vector3(1, 1, 1);
+        if(node.has("translation")) {
+            float[] t = node.get("translation").asFloatArray();
+            translation.set(t[0], t[1], t[2]);
+        }
+        if(node.has("rotation")) {
+            float[] r = node.get("rotation").asFloatArray();
+            rotation.set(r[0], r[1], r[2], r[3]);
+        }
+        if(node.has("scale")) {
+            float[] sc = node.get("scale").asFloatArray();
+            scale.set(sc[0], sc[1], sc[2]);
+        }
+        return transform.set(translation, rotation, scale);
+    }
+
+    private JsonValue getParent( JsonValue node ) {
+        int index = 0;
+        for(JsonValue n = json.get("nodes").child; n != node; n = n.next)
+            index++;
+        for(JsonValue n = json.get("nodes").child; n != null; n = n.next) {
+            JsonValue children = n.get("children");
+            if(children == null)
+                continue;
+            for(JsonValue child = children.child; child != null; child = child.next) {
+                if(child.asInt() == index)
+                    return n;
+            }
+        }
+        return null;
+    }
+
+    // returns the buffer of the accessor, positioned at the first element
+    private ByteBuffer getData( JsonValue accessor ) {
+        JsonValue bufferView = json.get("bufferViews").get(accessor.getInt("bufferView"));
+        ByteBuffer buffer = getBuffer(bufferView.getInt("buffer"));
+        buffer.position(bufferView.getInt("byteOffset", 0) + accessor.getInt("byteOffset", 0));
+        return buffer;
+    }
+
+    private int getStride( JsonValue accessor, int elementSize ) {
+        JsonValue bufferView = json.get("bufferViews").get(accessor.getInt("bufferView"));
+        return bufferView.getInt("byteStride", elementSize);
+    }
+
+    // hash of the glTF file and its buffers, e.g. to tell whether a file cooked from it is up to date
+    public int getSourceHash() {
+        int hash = Arrays.hashCode(file.readBytes());
+        for(int i = 0; i < buffers.length; i++)
+            hash = 31 * hash + Arrays.hashCode(getBuffer(i).array());
+        return hash;
+    }
+
+    private ByteBuffer getBuffer( int index ) {
+        if(buffers[index] == null) {
+            String uri = json.get("buffers").get(index).getString("uri");
+            byte[] bytes;
+            if(uri.startsWith("data:"))
+                bytes = Base64Coder.decode(uri.substring(uri.indexOf(',') + 1));
+            else
+                bytes = file.sibling(uri).readBytes();
+            buffers[index] = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return buffers[index];
+    }
+}
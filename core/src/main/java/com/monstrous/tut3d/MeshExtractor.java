@@ -0,0 +1,78 @@
+package com.monstrous.tut3d;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+// extract vertex positions and triangle indices from a mesh, e.g. to build a nav mesh or a collision mesh
+// The positions are read directly from the vertex buffer, so the interleaved vertex array (positions, normals,
+// texture coordinates, etc.) is not copied first. This keeps the peak heap use down for large level meshes.
+// Indices are returned as int so that meshes with more than 32k vertices are not truncated: 16-bit indices are read as
+// unsigned values and 32-bit index buffers (e.g. from a custom loader) are supported as well.
+
+public class MeshExtractor {
+
+    // returns x, y, z per vertex
+    public static float[] getPositions(Mesh mesh) {
+        VertexAttribute position = mesh.getVertexAttributes().findByUsage(VertexAttributes.Usage.Position);
+        if(position == null)
+            throw new GdxRuntimeException("Mesh has no position attribute");
+        int numVertices = mesh.getNumVertices();
+        int stride = mesh.getVertexSize()/4;        // floats per vertex in mesh, e.g. for position, normal, textureCoordinate, etc.
+        // offset of position floats per vertex, they are not necessarily the first 3 floats
+        int posOffset = position.offset / 4;
+
+        FloatBuffer vertices = mesh.getVerticesBuffer(false);
+        float[] positions = new float[3*numVertices];
+        for(int v = 0; v < numVertices; v++) {
+            int offset = stride * v + posOffset;
+            positions[3*v] = vertices.get(offset);
+            positions[3*v+1] = vertices.get(offset+1);
+            positions[3*v+2] = vertices.get(offset+2);
+        }
+        return positions;
+    }
+
+    // returns three vertex indices per triangle
+    // a mesh without indices is treated as a list of triangles of consecutive vertices
+    public static int[] getIndices(Mesh mesh) {
+        int numIndices = mesh.getNumIndices();
+        if(numIndices == 0) {
+            int[] indices = new int[mesh.getNumVertices()];
+            for(int i = 0; i < indices.length; i++)
+                indices[i] = i;
+            return indices;
+        }
+        return getIndices(mesh.getIndicesBuffer(false), numIndices);
+    }
+
+    // read count indices from an index buffer of any width: unsigned byte, unsigned short or int
+    public static int[] getIndices(Buffer buffer, int count) {
+        int[] indices = new int[count];
+        if(buffer instanceof ShortBuffer) {
+            ShortBuffer shorts = (ShortBuffer) buffer;
+            for(int i = 0; i < count; i++)
+                indices[i] = shorts.get(i) & 0xFFFF;       // unsigned, values above 32767 would otherwise become negative
+        }
+        else if(buffer instanceof IntBuffer) {
+            IntBuffer ints = (IntBuffer) buffer;
+            for(int i = 0; i < count; i++)
+                indices[i] = ints.get(i);
+        }
+        else if(buffer instanceof ByteBuffer) {
+            ByteBuffer bytes = (ByteBuffer) buffer;
+            for(int i = 0; i < count; i++)
+                indices[i] = bytes.get(i) & 0xFF;
+        }
+        else
+            throw new GdxRuntimeException("Unsupported index buffer type: " + buffer.getClass().getSimpleName());
+        return indices;
+    }
+}
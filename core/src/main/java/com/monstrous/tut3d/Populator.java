@@ -4,28 +4,35 @@ import com.badlogic.gdx.math.Vector3;
 import com.monstrous.tut3d.physics.CollisionShapeType;
 
 public class Populator {
+    // the static level geometry: node, node used for collision or null for the node itself, collision shape
+    // the navgen module generates the nav mesh from the collision nodes, see getLevelCollisionNodes()
+    public static final String[] LEVEL_NODES = { "brickcube", "groundbox", "brickcube.001", "brickcube.002", "brickcube.003",
+        "brickcube.004", "wall", "wall.001", "wall.002", "arch", "stairs", "stairs.001", "walkway", "ramp" };
+    public static final String[] LEVEL_PROXIES = { null, null, null, null, null,
+        null, null, null, null, null, "stairsProxy", "stairsProxy.001", "walkway", null };
+    public static final CollisionShapeType[] LEVEL_SHAPES = { CollisionShapeType.BOX, CollisionShapeType.BOX, CollisionShapeType.BOX,
+        CollisionShapeType.BOX, CollisionShapeType.BOX, CollisionShapeType.BOX, CollisionShapeType.BOX, CollisionShapeType.BOX,
+        CollisionShapeType.BOX, CollisionShapeType.MESH, CollisionShapeType.MESH, CollisionShapeType.MESH, CollisionShapeType.MESH,
+        CollisionShapeType.MESH };
+
+    public static final Vector3[] ENEMY_SPAWNS = { new Vector3(-15, 1f, -18), new Vector3(15, 1f, 20), new Vector3(-25, 1f, 25),
+        new Vector3(25, 1f, 25) };
+    public static final Vector3 PLAYER_SPAWN = new Vector3(5,1,5);
+
+    // the nodes of the static level geometry used for collision
+    public static String[] getLevelCollisionNodes() {
+        String[] nodes = new String[LEVEL_NODES.length];
+        for(int i = 0; i < nodes.length; i++)
+            nodes[i] = LEVEL_PROXIES[i] != null ? LEVEL_PROXIES[i] : LEVEL_NODES[i];
+        return nodes;
+    }
 
     public static void populate(World world) {
         world.clear();
         world.spawnObject(GameObjectType.TYPE_NAVMESH, "NAVMESH", null, CollisionShapeType.MESH, false, Vector3.Zero);
 
-        world.spawnObject(GameObjectType.TYPE_STATIC, "brickcube", null, CollisionShapeType.BOX, false, Vector3.Zero);
-        world.spawnObject(GameObjectType.TYPE_STATIC, "groundbox", null, CollisionShapeType.BOX, false, Vector3.Zero);
-        world.spawnObject(GameObjectType.TYPE_STATIC, "brickcube.001", null, CollisionShapeType.BOX,false, Vector3.Zero);
-        world.spawnObject(GameObjectType.TYPE_STATIC, "brickcube.002", null, CollisionShapeType.BOX,false, Vector3.Zero);
-        world.spawnObject(GameObjectType.TYPE_STATIC, "brickcube.003", null, CollisionShapeType.BOX,false, Vector3.Zero);
-        world.spawnObject(GameObjectType.TYPE_STATIC, "brickcube.004", null, CollisionShapeType.BOX,false, Vector3.Zero);
-        world.spawnObject(GameObjectType.TYPE_STATIC, "wall", null, CollisionShapeType.BOX,false, Vector3.Zero);
-        world.spawnObject(GameObjectType.TYPE_STATIC, "wall.001", null, CollisionShapeType.BOX,false, Vector3.Zero);
-        world.spawnObject(GameObjectType.TYPE_STATIC, "wall.002", null, CollisionShapeType.BOX,false, Vector3.Zero);
-
-        world.spawnObject(GameObjectType.TYPE_STATIC,"arch",  null, CollisionShapeType.MESH, false, Vector3.Zero);
-
-        world.spawnObject(GameObjectType.TYPE_STATIC,"stairs", "stairsProxy",  CollisionShapeType.MESH, false, Vector3.Zero);
-        world.spawnObject(GameObjectType.TYPE_STATIC,"stairs.001", "stairsProxy.001",  CollisionShapeType.MESH, false, Vector3.Zero);
-        world.spawnObject(GameObjectType.TYPE_STATIC,"walkway", "walkway", CollisionShapeType.MESH, false, Vector3.Zero);
-
-        world.spawnObject(GameObjectType.TYPE_STATIC,"ramp",  null, CollisionShapeType.MESH, false, Vector3.Zero);
+        for(int i = 0; i < LEVEL_NODES.length; i++)
+            world.spawnObject(GameObjectType.TYPE_STATIC, LEVEL_NODES[i], LEVEL_PROXIES[i], LEVEL_SHAPES[i], false, Vector3.Zero);
 
         world.spawnObject(GameObjectType.TYPE_DYNAMIC, "ball", null, CollisionShapeType.SPHERE,  true, new Vector3(17, 0, 5.1f) );
         world.spawnObject(GameObjectType.TYPE_DYNAMIC, "ball", null, CollisionShapeType.SPHERE,  true, new Vector3(15.1f, 2.5f, 5) );
@@ -49,12 +56,10 @@ public class Populator {
         world.spawnObject(GameObjectType.TYPE_PICKUP_GUN, "GunArmature",  null, CollisionShapeType.SPHERE, true, new Vector3(0,1f, 0));
 
 
-        world.spawnObject(GameObjectType.TYPE_ENEMY, "cook",  "cookProxy", CollisionShapeType.CAPSULE, true, new Vector3(-15, 1f, -18) );  // bad guy
-        world.spawnObject(GameObjectType.TYPE_ENEMY, "cook",  "cookProxy", CollisionShapeType.CAPSULE, true, new Vector3(15, 1f, 20) );  // bad guy
-        world.spawnObject(GameObjectType.TYPE_ENEMY, "cook",  "cookProxy", CollisionShapeType.CAPSULE, true, new Vector3(-25, 1f, 25) );  // bad guy
-        world.spawnObject(GameObjectType.TYPE_ENEMY, "cook",  "cookProxy", CollisionShapeType.CAPSULE, true, new Vector3(25, 1f, 25) );  // bad guy
+        for(Vector3 position : ENEMY_SPAWNS)
+            world.spawnObject(GameObjectType.TYPE_ENEMY, "cook",  "cookProxy", CollisionShapeType.CAPSULE, true, position );  // bad guy
 
-        GameObject go = world.spawnObject(GameObjectType.TYPE_PLAYER, "ducky",null, CollisionShapeType.CAPSULE, true, new Vector3(5,1,5));
+        GameObject go = world.spawnObject(GameObjectType.TYPE_PLAYER, "ducky",null, CollisionShapeType.CAPSULE, true, PLAYER_SPAWN);
         world.setPlayer(go);
     }
 }
@@ -14,7 +14,12 @@ public class Settings {
     static public float turnSpeed = 120f;   // degrees/s
     static public float jumpForce = 5.0f;
     static public float groundRayLength = 1.2f;
+    static public boolean navGroundCheck = true;  // check if the player is on the ground using the nav mesh, the physics ray is only used off the mesh or in the air
     static public float navHeight = 1.6f;       // should be about half the height of the characters
+    static public boolean useFlowField = true;  // enemies follow a shared flow field to the player instead of each searching a path
+    static public boolean useGeneratedNavMesh = false;  // use the nav mesh generated from the level geometry (see navgen module) instead of the NAVMESH node
+    static public float obstacleRestSpeed = 0.5f;  // loose objects slower than this (m/s) block the nav mesh
+    static public int pathThreads = 2;          // worker threads to search enemy paths when not using the flow field, 0 to search on the render thread
 
 
     static public boolean invertLook = false;
@@ -24,6 +29,9 @@ public class Settings {
     static public float degreesPerPixel = 0.1f; // mouse sensitivity
 
     static public float gravity = -9.8f; // meters / s^2
+    static public float physicsRate = 40f;      // fixed physics steps per second
+    static public boolean interpolatePhysics = true;    // render the bodies between the last two physics steps, so motion is smooth at any frame rate
+    static public boolean physicsThread = false;    // step the physics on its own thread, overlapping with the rest of the frame (not on the web)
 
     static public final int shadowMapSize = 4096;
 
@@ -36,9 +44,12 @@ public class Settings {
     static public float gunForce = 40f;
 
     static public float cookForce = 8f; // force on cook to move, determines walk speed
+    static public boolean crowdAvoidance = true;    // cooks steer around each other, see NavCrowd
 
     static public Vector3 gunPosition = new Vector3(-1.1f, 1.9f, 1.8f); // gun position in gun camera view
     static public float gunScale = 3.0f;
 
     static public final String GLTF_FILE = "models/step21.gltf";
+    static public boolean recordInput = false;  // record the player input of a session to INPUT_RECORDING_FILE, to replay it in the headless module
+    static public final String INPUT_RECORDING_FILE = "input.rec";    // local file
 }
@@ -1,40 +1,60 @@
 package com.monstrous.tut3d;
 
+import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.g3d.ModelInstance;
 import com.badlogic.gdx.graphics.g3d.model.Node;
+import com.badlogic.gdx.math.Quaternion;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
 import com.monstrous.tut3d.behaviours.CookBehaviour;
 import com.monstrous.tut3d.inputs.PlayerController;
+import com.monstrous.tut3d.nav.NavCrowd;
+import com.monstrous.tut3d.nav.NavFlowField;
 import com.monstrous.tut3d.nav.NavMesh;
 import com.monstrous.tut3d.nav.NavMeshBuilder;
-import com.monstrous.tut3d.nav.NavNode;
+import com.monstrous.tut3d.nav.NavMeshFile;
+import com.monstrous.tut3d.nav.PathService;
 import com.monstrous.tut3d.physics.*;
 import net.mgsx.gltf.scene3d.scene.Scene;
-import net.mgsx.gltf.scene3d.scene.SceneAsset;
+import net.mgsx.gltf.scene3d.scene.SceneModel;
 
 public class World implements Disposable {
 
     private final Array<GameObject> gameObjects;
     private GameObject player;
     public GameStats stats;
-    private final SceneAsset sceneAsset;
+    private final SceneModel sceneModel;
+    private final Assets.AssetSounds sounds;    // null in headless mode
     private final PhysicsWorld physicsWorld;
     private final PhysicsBodyFactory factory;
     private final PlayerController playerController;
     public final PhysicsRayCaster rayCaster;
     public final WeaponState weaponState;
     public NavMesh navMesh;
-    public NavNode navNode;
-    private int prevNode = -1;
+    public NavFlowField flowField;          // shared field towards the player for the enemies
+    public NavCrowd crowd;                  // local avoidance between the enemies
+    public final PathService pathService;   // searches enemy paths on worker threads
+    public final WorldTimings timings;      // time per phase of update()
+    private final ObjectMap<String, Array<GameObject>> projectilePool;  // removed balls and pans per node name, for reuse
 
     public World() {
+        this(Main.assets.sceneAsset.scene, false);
+    }
+
+    // in headless mode the world needs no GL context and no audio, e.g. to run the simulation on a server or in a benchmark
+    // the scene model can then be loaded without GPU resources (see Assets.loadHeadlessScene) and sounds are not played
+    public World(SceneModel sceneModel, boolean headless) {
         gameObjects = new Array<>();
         stats = new GameStats();
-        sceneAsset = Main.assets.sceneAsset;
-//        for(Node node : sceneAsset.scene.model.nodes){  // print some debug info
+        this.sceneModel = sceneModel;
+        sounds = headless ? null : Main.assets.sounds;
+//        for(Node node : sceneModel.model.nodes){  // print some debug info
 //            Gdx.app.log("Node ", node.id);
 //        }
         physicsWorld = new PhysicsWorld(this);
@@ -42,10 +62,14 @@ public class World implements Disposable {
         rayCaster = new PhysicsRayCaster(physicsWorld);
         playerController = new PlayerController(this);
         weaponState = new WeaponState();
+        pathService = new PathService(Gdx.app.getType() == Application.ApplicationType.WebGL ? 0 : Settings.pathThreads);    // no threads on the web
+        timings = new WorldTimings();
+        projectilePool = new ObjectMap<>();
     }
 
     public void clear() {
         physicsWorld.reset();
+        factory.reset();
         playerController.reset();
         stats.reset();
         weaponState.reset();
@@ -53,7 +77,10 @@ public class World implements Disposable {
         gameObjects.clear();
         player = null;
         navMesh = null;
-        prevNode = -1;
+        flowField = null;
+        crowd = null;
+        pathService.clear();
+        projectilePool.clear();     // their geoms went with the physics world
     }
     public int getNumGameObjects() {
         return gameObjects.size;
@@ -70,7 +97,6 @@ public class World implements Disposable {
     public void setPlayer( GameObject player ){
         this.player = player;
         player.body.setCapsuleCharacteristics();
-        //navMesh.updateDistances(player.getPosition());
     }
 
     public PlayerController getPlayerController() {
@@ -78,6 +104,12 @@ public class World implements Disposable {
     }
 
     public GameObject spawnObject(GameObjectType type, String name, String proxyName, CollisionShapeType shapeType, boolean resetPosition, Vector3 position){
+        if(type == GameObjectType.TYPE_NAVMESH){
+            navMesh = loadNavMesh(name, resetPosition, position);
+            flowField = new NavFlowField(navMesh);
+            crowd = new NavCrowd();
+            return null;
+        }
         Scene scene = loadNode( name, resetPosition, position );
         ModelInstance collisionInstance = scene.modelInstance;
         if(proxyName != null) {
@@ -85,10 +117,6 @@ public class World implements Disposable {
             collisionInstance = proxyScene.modelInstance;
         }
         PhysicsBody body = null;
-        if(type == GameObjectType.TYPE_NAVMESH){
-            navMesh = NavMeshBuilder.build(scene.modelInstance);
-            return null;
-        }
         body = factory.createBody(collisionInstance, shapeType, type.isStatic);
         GameObject go = new GameObject(type, scene, body);
         gameObjects.add(go);
@@ -96,12 +124,61 @@ public class World implements Disposable {
             stats.numEnemies++;
         if(go.type == GameObjectType.TYPE_PICKUP_COIN)
            stats.numCoins++;
+        if(navMesh != null && isLooseObject(go))
+            go.navObstacle = navMesh.addObstacle();       // e.g. balls and pans lying around block enemy paths
+        if(crowd != null && go.type.isEnemy)
+            go.crowdAgent = crowd.addAgent(go.body.getBoundingBox(agentBounds).getWidth()/2f);
 
         return go;
     }
 
+    // balls and pans that were removed are parked in a pool instead of destroyed, spawning one takes it from the pool
+    // where possible: that saves loading the scene, the physics body and its debug model for each shot
+    public GameObject spawnProjectile(GameObjectType type, String name, String proxyName, CollisionShapeType shapeType, Vector3 position){
+        Array<GameObject> pool = projectilePool.get(name);
+        if(pool == null || pool.isEmpty())
+            return spawnObject(type, name, proxyName, shapeType, true, position);
+        GameObject go = pool.pop();
+        go.health = 1f;
+        go.body.unpark(position);       // also resets the previous pose the rendering interpolates from
+        go.scene.modelInstance.transform.setToTranslation(position);        // like a new object, instead of the pose it was removed at
+        gameObjects.add(go);
+        go.navObstacle = null;
+        if(navMesh != null && isLooseObject(go))
+            go.navObstacle = navMesh.addObstacle();
+        return go;
+    }
+
+    private boolean isProjectile( GameObject go ) {
+        return go.type.isFriendlyBullet || go.type.isEnemyBullet;
+    }
+
+    // dynamic objects other than characters and pickups
+    private boolean isLooseObject( GameObject go ) {
+        return !go.type.isStatic && !go.type.isPlayer && !go.type.isEnemy && !go.type.canPickup && go.body.geom.getBody() != null;
+    }
+
+    // use the cooked nav mesh file of the node if there is one (see tools module), otherwise build the nav mesh from the node
+    // the cooked file is kept up to date at build time, so the node is only loaded when there is no usable file
+    // With Settings.useGeneratedNavMesh the nav mesh generated from the level geometry is used instead (see navgen module).
+    private NavMesh loadNavMesh( String nodeName, boolean resetPosition, Vector3 position ) {
+        String fileName = NavMeshFile.getFileName(Settings.GLTF_FILE, Settings.useGeneratedNavMesh ? NavMeshFile.GENERATED : nodeName);
+        FileHandle file = Gdx.files.internal(fileName);
+        if(file.exists()) {
+            try {
+                return NavMeshFile.read(file);
+            } catch (GdxRuntimeException e) {
+                Gdx.app.error("Cannot use nav mesh file", e.getMessage());
+            }
+        }
+        else if(Settings.useGeneratedNavMesh)
+            Gdx.app.error("Generated nav mesh not found", fileName + ", run navgen:generateNavMesh. Using the nav mesh node instead.");
+        Scene scene = loadNode( nodeName, resetPosition, position );
+        return NavMeshBuilder.build(scene.modelInstance);
+    }
+
     private Scene loadNode( String nodeName, boolean resetPosition, Vector3 position ) {
-        Scene scene = new Scene(sceneAsset.scene, nodeName);
+        Scene scene = new Scene(sceneModel, nodeName);
         if(scene.modelInstance.nodes.size == 0)
             throw new RuntimeException("Cannot find node in GLTF file: " + nodeName);
         applyNodeTransform(resetPosition, scene.modelInstance, scene.modelInstance.nodes.first());         // incorporate nodes' transform into model instance transform
@@ -122,8 +199,24 @@ public class World implements Disposable {
         gameObject.health = 0;
         if(gameObject.type == GameObjectType.TYPE_ENEMY)
             stats.numEnemies--;
-        gameObjects.removeValue(gameObject, true);
-        gameObject.dispose();
+        if(gameObject.navObstacle != null && navMesh != null)
+            navMesh.removeObstacle(gameObject.navObstacle);
+        if(gameObject.crowdAgent != null && crowd != null)
+            crowd.removeAgent(gameObject.crowdAgent);
+        boolean removed = gameObjects.removeValue(gameObject, true);
+        if(!isProjectile(gameObject))
+            gameObject.dispose();
+        else if(removed) {       // not when it was already removed, e.g. a ball that hit two cooks in the same step
+            // note: this can happen during a collision callback, parking only disables the geom which ODE allows
+            gameObject.body.park();
+            String name = gameObject.scene.modelInstance.nodes.first().id;        // node name as passed to spawnProjectile()
+            Array<GameObject> pool = projectilePool.get(name);
+            if(pool == null) {
+                pool = new Array<>();
+                projectilePool.put(name, pool);
+            }
+            pool.add(gameObject);
+        }
     }
 
 
@@ -132,45 +225,84 @@ public class World implements Disposable {
         if(stats.numEnemies > 0 || stats.coinsCollected < stats.numCoins)
             stats.gameTime += deltaTime;
         else {
-            if(!stats.levelComplete)
-                Main.assets.sounds.GAME_COMPLETED.play();
+            if(!stats.levelComplete && sounds != null)
+                sounds.GAME_COMPLETED.play();
             stats.levelComplete = true;
         }
+        timings.startFrame();
         weaponState.update(deltaTime);
         playerController.update(player, deltaTime);
+        timings.endPhase(WorldTimings.PLAYER);
         physicsWorld.update(deltaTime);
+        timings.endPhase(WorldTimings.PHYSICS);
         syncToPhysics();
+        timings.endPhase(WorldTimings.SYNC);
+        if(navMesh != null) {
+            updateObstacles();
+            if(Settings.useFlowField)
+                flowField.update(player.getPosition());    // only recomputed when the player moves to another nav node or an obstacle changed
+            updateCrowd();
+        }
+        timings.endPhase(WorldTimings.NAVIGATION);
         for(GameObject go : gameObjects) {
             if(go.getPosition().y < -10)        // delete objects that fell off the map
                 removeObject(go);
             go.update(this, deltaTime);
         }
+        timings.endPhase(WorldTimings.BEHAVIOURS);
+        pathService.update();       // hand over the paths that are ready and start new searches
+        timings.endPhase(WorldTimings.NAVIGATION);
+        timings.endFrame();
+    }
 
-//        navNode = navMesh.findNode( player.getPosition(), Settings.groundRayLength );
-//        if(navNode == null)
-//            Gdx.app.error("player outside the nav mesh:", " pos:"+ player.getPosition().toString());
-//         if (navNode != null && navNode.id != prevNode) {
-//            Gdx.app.log("player moves to nav node:", "" + navNode.id + " pos:" + player.getPosition().toString());
-//            prevNode = navNode.id;
-//            navMesh.updateDistances(player.getPosition());
-//        }
+    private final BoundingBox obstacleBounds = new BoundingBox();
+    private final BoundingBox agentBounds = new BoundingBox();
+
+    // objects at rest block the nav mesh under them, moving objects do not
+    private void updateObstacles() {
+        for(GameObject go : gameObjects) {
+            if(go.navObstacle == null)
+                continue;
+            if(go.body.getVelocity().len() < Settings.obstacleRestSpeed)
+                go.navObstacle.set(go.body.getBoundingBox(obstacleBounds));
+            else
+                go.navObstacle.clear();
+        }
+        navMesh.updateObstacles();
+    }
+
+    // the enemies steer around each other using their positions of this frame
+    private void updateCrowd() {
+        for(GameObject go : gameObjects) {
+            if(go.crowdAgent == null)
+                continue;
+            go.crowdAgent.position.set(go.getPosition());
+            go.crowdAgent.velocity.set(go.body.getVelocity());
+        }
+        crowd.update();
     }
 
+    private final Vector3 renderPosition = new Vector3();
+    private final Quaternion renderOrientation = new Quaternion();
+
+    // the models are placed between the last two physics steps (see Settings.interpolatePhysics)
     private void syncToPhysics() {
+        float alpha = Settings.interpolatePhysics ? physicsWorld.getInterpolationAlpha() : 1f;
         for(GameObject go : gameObjects){
             if( go.body != null && go.body.geom.getBody() != null) {
+                go.body.getInterpolatedPosition(alpha, renderPosition);
                 if(go.type == GameObjectType.TYPE_PLAYER){
                     // use information from the player controller, since the rigid body is not rotated.
                     player.scene.modelInstance.transform.setToRotation(Vector3.Z, playerController.getForwardDirection());
-                    player.scene.modelInstance.transform.setTranslation(go.body.getPosition());
+                    player.scene.modelInstance.transform.setTranslation(renderPosition);
                 }
                 else if(go.type == GameObjectType.TYPE_ENEMY){
                     CookBehaviour cb = (CookBehaviour) go.behaviour;
                     go.scene.modelInstance.transform.setToRotation(Vector3.Z, cb.getDirection());
-                    go.scene.modelInstance.transform.setTranslation(go.body.getPosition());
+                    go.scene.modelInstance.transform.setTranslation(renderPosition);
                 }
                 else
-                    go.scene.modelInstance.transform.set(go.body.getPosition(), go.body.getOrientation());
+                    go.scene.modelInstance.transform.set(renderPosition, go.body.getInterpolatedOrientation(alpha, renderOrientation));
             }
         }
     }
@@ -192,14 +324,15 @@ public class World implements Disposable {
             case BALL:
                 spawnPos.set(viewingDirection);
                 spawnPos.add(player.getPosition()); // spawn from 1 unit in front of the player
-                GameObject ball = spawnObject(GameObjectType.TYPE_FRIENDLY_BULLET, "ball", null, CollisionShapeType.SPHERE, true, spawnPos );
+                GameObject ball = spawnProjectile(GameObjectType.TYPE_FRIENDLY_BULLET, "ball", null, CollisionShapeType.SPHERE, spawnPos );
                 shootForce.set(viewingDirection);        // shoot in viewing direction (can be up or down from player direction)
                 shootForce.scl(Settings.ballForce);   // scale for speed
                 ball.body.geom.getBody().setDamping(0.0f, 0.0f);
                 ball.body.applyForce(shootForce);
                 break;
             case GUN:
-                Main.assets.sounds.GUN_SHOT.play();
+                if(sounds != null)
+                    sounds.GUN_SHOT.play();
                 if(hitPoint.hit) {
                     GameObject victim = hitPoint.refObject;
                     Gdx.app.log("gunshot hit", victim.scene.modelInstance.nodes.first().id);
@@ -248,32 +381,38 @@ public class World implements Disposable {
         removeObject(pickup);
         if(pickup.type == GameObjectType.TYPE_PICKUP_COIN) {
             stats.coinsCollected++;
-            Main.assets.sounds.COIN.play();
+            if(sounds != null)
+                sounds.COIN.play();
         }
         else if(pickup.type == GameObjectType.TYPE_PICKUP_HEALTH) {
             character.health = Math.min(character.health + 0.5f, 1f);   // +50% health
-            Main.assets.sounds.UPGRADE.play();
+            if(sounds != null)
+                sounds.UPGRADE.play();
         }
         else if(pickup.type == GameObjectType.TYPE_PICKUP_GUN) {
             weaponState.haveGun = true;
             weaponState.currentWeaponType = WeaponType.GUN;
-            Main.assets.sounds.UPGRADE.play();
+            if(sounds != null)
+                sounds.UPGRADE.play();
         }
     }
 
     private void bulletHit(GameObject character) {
         character.health -= 0.25f;      // - 25% health
-        Main.assets.sounds.HIT.play();
+        if(sounds != null)
+            sounds.HIT.play();
         if(character.isDead()) {
             removeObject(character);
-            if (character.type.isPlayer)
-                Main.assets.sounds.GAME_OVER.play();
+            if (character.type.isPlayer && sounds != null)
+                sounds.GAME_OVER.play();
         }
     }
 
     @Override
     public void dispose() {
         physicsWorld.dispose();
+        factory.dispose();          // the shared trimesh data, after the geoms that use it
         rayCaster.dispose();
+        pathService.dispose();
     }
 }
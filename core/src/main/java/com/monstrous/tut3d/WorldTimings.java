@@ -0,0 +1,66 @@
+package com.monstrous.tut3d;
+
+// time spent per phase of World.update(), summed over the frames since the last reset, e.g. to profile a replay
+// also keeps the slowest frame per phase, to find spikes
+public class WorldTimings {
+    public static final int PLAYER = 0;         // weapon state and player controller
+    public static final int PHYSICS = 1;
+    public static final int SYNC = 2;           // model instances to the physics bodies
+    public static final int NAVIGATION = 3;     // nav mesh obstacles, flow field, crowd and path service
+    public static final int BEHAVIOURS = 4;     // game object updates, e.g. the cooks
+    public static final String[] NAMES = { "player control", "physics", "sync", "navigation", "behaviours" };
+
+    public final long[] nanos = new long[NAMES.length];
+    public final long[] maxNanos = new long[NAMES.length];     // slowest frame
+    public final long[] frameNanos = new long[NAMES.length];   // last frame
+    public int numFrames;
+    private long startTime;
+
+    public void reset() {
+        for(int i = 0; i < NAMES.length; i++) {
+            nanos[i] = 0;
+            maxNanos[i] = 0;
+            frameNanos[i] = 0;
+        }
+        numFrames = 0;
+    }
+
+    void startFrame() {
+        for(int i = 0; i < NAMES.length; i++)
+            frameNanos[i] = 0;
+        startTime = System.nanoTime();
+    }
+
+    // adds the time since the previous call to a phase
+    void endPhase( int phase ) {
+        long now = System.nanoTime();
+        frameNanos[phase] += now - startTime;
+        startTime = now;
+    }
+
+    void endFrame() {
+        for(int i = 0; i < NAMES.length; i++) {
+            nanos[i] += frameNanos[i];
+            maxNanos[i] = Math.max(maxNanos[i], frameNanos[i]);
+        }
+        numFrames++;
+    }
+
+    public long getFrameNanos() {
+        long total = 0;
+        for(long n : frameNanos)
+            total += n;
+        return total;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < NAMES.length; i++) {
+            if(i > 0)
+                sb.append(", ");
+            sb.append(NAMES[i]).append(' ').append(numFrames == 0 ? 0 : nanos[i] / 1000 / numFrames)
+                .append(" us (max ").append(maxNanos[i] / 1000).append(')');
+        }
+        return sb.toString();
+    }
+}
@@ -43,20 +43,29 @@ public class CookBehaviour extends Behaviour {
             navActor = new NavActor(world.navMesh);
         }
 
-        Vector3 wayPoint = navActor.getWayPoint(go.getPosition(), world.getPlayer().getPosition());  // next point to aim for on the route to target
+        // next point to aim for on the route to target
+        Vector3 wayPoint;
+        if(Settings.useFlowField)
+            wayPoint = navActor.getWayPoint(go.getPosition(), world.getPlayer().getPosition(), world.flowField);
+        else if(Settings.pathThreads > 0)
+            wayPoint = navActor.getWayPoint(go.getPosition(), world.getPlayer().getPosition(), world.pathService);
+        else
+            wayPoint = navActor.getWayPoint(go.getPosition(), world.getPlayer().getPosition());
 
         float climbFactor = 1f;
         if (navActor.getSlope() > 0.1f) {    // if we need to climb up, disable the gravity
-            go.body.geom.getBody().setGravityMode(false);
+            go.body.setGravityMode(false);
             climbFactor = 2f;       // and apply some extra force
         } else
-            go.body.geom.getBody().setGravityMode(true);
+            go.body.setGravityMode(true);
 
         // move towards waypoint
         targetDirection.set(wayPoint).sub(go.getPosition());  // vector towards way point
         if (targetDirection.len() > 1f) {    // if we're at the way point, stop turning to avoid nervous jittering
             targetDirection.y = 0;  // consider only vector in horizontal plane
             targetDirection.nor();      // make unit vector
+            if(go.crowdAgent != null && Settings.crowdAvoidance)    // steer around other enemies
+                world.crowd.steer(go.crowdAgent, targetDirection, go.crowdAgent.velocity.len());
             direction.slerp(targetDirection, 0.02f);            // smooth rotation towards target direction
 
             if(distance > 5f)   // move unless quite close
@@ -77,7 +86,7 @@ public class CookBehaviour extends Behaviour {
         spawnPos.nor().scl(1f);
         spawnPos.add(go.getPosition()); // spawn from 1 unit in front of the character
         spawnPos.y += 1f;
-        GameObject pan = world.spawnObject(GameObjectType.TYPE_ENEMY_BULLET, "pan", "panProxy", CollisionShapeType.MESH, true, spawnPos );
+        GameObject pan = world.spawnProjectile(GameObjectType.TYPE_ENEMY_BULLET, "pan", "panProxy", CollisionShapeType.MESH, spawnPos );
         shootDirection.set(direction);        // shoot forward
         shootDirection.y += 0.5f;       // and slightly up
         shootDirection.scl(Settings.panForce);   // scale for speed
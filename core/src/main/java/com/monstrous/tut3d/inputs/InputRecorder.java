@@ -0,0 +1,119 @@
+package com.monstrous.tut3d.inputs;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+
+// records the input of the player controller per frame into a compact binary log, to replay a game (see InputReplay)
+// The recording has to start right after the level is populated, and recordFrame() is called just before each
+// World.update(). The log is big-endian:
+//
+//  int     magic ("T3DI"), short version
+//  per frame:
+//  float   delta time
+//  byte    key mask, see PlayerInput.keyMask
+//  byte    flags, followed by the fields that the flags announce:
+//  float   mouse delta x, y                (MOUSE)
+//  float   stick move x, y, look x, y      (STICKS, only when they changed)
+//  byte    number of shots                 (FIRE)
+//  byte    number of weapon switches       (SWITCH_WEAPON)
+
+public class InputRecorder implements Disposable {
+    static final int MAGIC = 0x54334449;        // "T3DI"
+    static final int VERSION = 1;
+
+    static final int MOUSE = 1;
+    static final int STICKS = 2;
+    static final int RUNNING = 4;
+    static final int SCOPE = 8;
+    static final int FIRE = 16;
+    static final int SWITCH_WEAPON = 32;
+    static final int RESTART = 64;
+
+    private final DataOutputStream out;
+    private final PlayerInput input = new PlayerInput();
+    private final Vector2 stickMove = new Vector2();
+    private final Vector2 stickLook = new Vector2();
+    private boolean restart;
+    private int numFrames;
+
+    public InputRecorder( FileHandle file ) {
+        out = new DataOutputStream(new BufferedOutputStream(file.write(false)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Cannot write input recording: " + file, e);
+        }
+    }
+
+    // the level was populated again, e.g. the player pressed restart
+    public void recordRestart() {
+        restart = true;
+    }
+
+    public void recordFrame( PlayerController playerController, float deltaTime ) {
+        playerController.captureInput(input);
+
+        int flags = 0;
+        if(input.mouseDeltaX != 0 || input.mouseDeltaY != 0)
+            flags |= MOUSE;
+        if(!input.stickMove.equals(stickMove) || !input.stickLook.equals(stickLook))
+            flags |= STICKS;
+        if(input.running)
+            flags |= RUNNING;
+        if(input.scopeMode)
+            flags |= SCOPE;
+        if(input.fireEvents > 0)
+            flags |= FIRE;
+        if(input.weaponSwitches > 0)
+            flags |= SWITCH_WEAPON;
+        if(restart)
+            flags |= RESTART;
+        restart = false;
+
+        try {
+            out.writeFloat(deltaTime);
+            out.writeByte(input.keyMask);
+            out.writeByte(flags);
+            if((flags & MOUSE) != 0) {
+                out.writeFloat(input.mouseDeltaX);
+                out.writeFloat(input.mouseDeltaY);
+            }
+            if((flags & STICKS) != 0) {
+                out.writeFloat(input.stickMove.x);
+                out.writeFloat(input.stickMove.y);
+                out.writeFloat(input.stickLook.x);
+                out.writeFloat(input.stickLook.y);
+                stickMove.set(input.stickMove);
+                stickLook.set(input.stickLook);
+            }
+            if((flags & FIRE) != 0)
+                out.writeByte(Math.min(input.fireEvents, 255));
+            if((flags & SWITCH_WEAPON) != 0)
+                out.writeByte(Math.min(input.weaponSwitches, 255));
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Cannot write input recording", e);
+        }
+        numFrames++;
+    }
+
+    public int getNumFrames() {
+        return numFrames;
+    }
+
+    @Override
+    public void dispose() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Cannot close input recording", e);
+        }
+    }
+}
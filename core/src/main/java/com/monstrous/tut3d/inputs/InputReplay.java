@@ -0,0 +1,62 @@
+package com.monstrous.tut3d.inputs;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+
+// reads back an input log written by InputRecorder, one frame at a time
+// pass the same PlayerInput for every frame: the stick values are only stored when they change.
+// Apply each frame with PlayerController.applyInput() (after populating the level again if the frame says so) and then
+// update the world, for a replay of the game that was recorded.
+public class InputReplay {
+    private final DataInputStream in;
+
+    public InputReplay( FileHandle file ) {
+        in = new DataInputStream(new ByteArrayInputStream(file.readBytes()));
+        try {
+            if (in.readInt() != InputRecorder.MAGIC)
+                throw new GdxRuntimeException("Not an input recording: " + file);
+            int version = in.readShort();
+            if (version != InputRecorder.VERSION)
+                throw new GdxRuntimeException("Input recording version " + version + " not supported: " + file);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Cannot read input recording: " + file, e);
+        }
+    }
+
+    // returns false at the end of the recording, a frame cut off at the end (e.g. the game crashed) is dropped
+    public boolean nextFrame( PlayerInput input ) {
+        try {
+            input.deltaTime = in.readFloat();
+            input.keyMask = in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            input.mouseDeltaX = 0;
+            input.mouseDeltaY = 0;
+            if((flags & InputRecorder.MOUSE) != 0) {
+                input.mouseDeltaX = in.readFloat();
+                input.mouseDeltaY = in.readFloat();
+            }
+            if((flags & InputRecorder.STICKS) != 0) {
+                input.stickMove.x = in.readFloat();
+                input.stickMove.y = in.readFloat();
+                input.stickLook.x = in.readFloat();
+                input.stickLook.y = in.readFloat();
+            }
+            input.running = (flags & InputRecorder.RUNNING) != 0;
+            input.scopeMode = (flags & InputRecorder.SCOPE) != 0;
+            input.fireEvents = (flags & InputRecorder.FIRE) != 0 ? in.readUnsignedByte() : 0;
+            input.weaponSwitches = (flags & InputRecorder.SWITCH_WEAPON) != 0 ? in.readUnsignedByte() : 0;
+            input.restart = (flags & InputRecorder.RESTART) != 0;
+            return true;
+        } catch (EOFException e) {
+            return false;
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Cannot read input recording", e);
+        }
+    }
+}
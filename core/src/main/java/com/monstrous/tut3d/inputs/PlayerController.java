@@ -9,6 +9,7 @@ import com.badlogic.gdx.utils.IntIntMap;
 import com.monstrous.tut3d.GameObject;
 import com.monstrous.tut3d.Settings;
 import com.monstrous.tut3d.World;
+import com.monstrous.tut3d.nav.NavGroundTracker;
 import com.monstrous.tut3d.physics.PhysicsRayCaster;
 
 public class PlayerController extends InputAdapter  {
@@ -34,10 +35,14 @@ public class PlayerController extends InputAdapter  {
     private final Vector3 tmp2 = new Vector3();
     private final Vector3 tmp3 = new Vector3();
     private final PhysicsRayCaster.HitPoint hitPoint = new PhysicsRayCaster.HitPoint();
+    private NavGroundTracker groundTracker;     // for the nav mesh of the world, created on first use
     private final Vector2 stickMove = new Vector2();
     private final Vector2 stickLook = new Vector2();
     private boolean isRunning;
     private float stickViewAngle; // angle up or down
+    private int fireEvents;         // since the last captureInput(), for the input recorder
+    private int weaponSwitches;
+    private final int[] actionKeys = new int[8];    // see updateActionKeys()
 
 
     public PlayerController(World world)  {
@@ -70,8 +75,10 @@ public class PlayerController extends InputAdapter  {
     @Override
     public boolean keyUp (int keycode) {
         keys.remove(keycode, 0);
-        if (keycode == switchWeaponKey)             // switch weapons on key release
+        if (keycode == switchWeaponKey) {           // switch weapons on key release
             world.weaponState.switchWeapon();
+            weaponSwitches++;
+        }
         return true;
     }
 
@@ -114,6 +121,7 @@ public class PlayerController extends InputAdapter  {
     }
 
     public void fireWeapon() {
+        fireEvents++;
         world.rayCaster.findTarget(world.getPlayer().getPosition(), viewingDirection, hitPoint);
         world.fireWeapon(  viewingDirection, hitPoint );
     }
@@ -162,13 +170,13 @@ public class PlayerController extends InputAdapter  {
         // reset velocities
         linearForce.set(0,0,0);
 
-        boolean isOnGround = world.rayCaster.isGrounded(player, player.getPosition(), Settings.groundRayLength, groundNormal);
+        boolean isOnGround = isOnGround(player);
         // disable gravity if player is on a slope
         if(isOnGround) {
             float dot = groundNormal.dot(Vector3.Y);
-            player.body.geom.getBody().setGravityMode(dot >= 0.99f);
+            player.body.setGravityMode(dot >= 0.99f);
         } else {
-            player.body.geom.getBody().setGravityMode(true);
+            player.body.setGravityMode(true);
         }
 
         float moveSpeed = Settings.walkSpeed;
@@ -222,6 +230,76 @@ public class PlayerController extends InputAdapter  {
     }
 
 
+    // on the nav mesh we know the ground from the triangle under the player, the physics ray is only needed off the mesh
+    // or when the player is above the nav mesh, e.g. jumping or standing on an object
+    private boolean isOnGround( GameObject player ) {
+        Vector3 playerPos = player.getPosition();
+        if(Settings.navGroundCheck && world.navMesh != null) {
+            if(groundTracker == null || groundTracker.getNavMesh() != world.navMesh)
+                groundTracker = new NavGroundTracker(world.navMesh);
+            if(groundTracker.update(playerPos) && playerPos.y - groundTracker.height <= Settings.groundRayLength) {
+                groundNormal.set(groundTracker.normal);
+                return true;
+            }
+        }
+        return world.rayCaster.isGrounded(player, playerPos, Settings.groundRayLength, groundNormal);
+    }
+
+    // the keys that move the player, in the order of the bits of PlayerInput.keyMask
+    // filled in on each use because the key fields are public and can be rebound at any time
+    private void updateActionKeys() {
+        actionKeys[0] = forwardKey;
+        actionKeys[1] = backwardKey;
+        actionKeys[2] = strafeLeftKey;
+        actionKeys[3] = strafeRightKey;
+        actionKeys[4] = turnLeftKey;
+        actionKeys[5] = turnRightKey;
+        actionKeys[6] = jumpKey;
+        actionKeys[7] = runShiftKey;
+    }
+
+    // the input for the coming update, to be called just before World.update() e.g. to record it
+    // the fire and switch weapon events are counted since the previous call
+    public void captureInput( PlayerInput input ) {
+        updateActionKeys();
+        input.keyMask = 0;
+        for(int i = 0; i < actionKeys.length; i++)
+            if(keys.containsKey(actionKeys[i]))
+                input.keyMask |= 1 << i;
+        input.mouseDeltaX = mouseDeltaX;
+        input.mouseDeltaY = mouseDeltaY;
+        input.stickMove.set(stickMove);
+        input.stickLook.set(stickLook);
+        input.running = isRunning;
+        input.scopeMode = world.weaponState.scopeMode;
+        input.fireEvents = fireEvents;
+        input.weaponSwitches = weaponSwitches;
+        fireEvents = 0;
+        weaponSwitches = 0;
+    }
+
+    // replay a captured input instead of the input events, to be called just before World.update()
+    // note: the events are replayed as weapon switches followed by shots, whatever their order within the frame
+    public void applyInput( PlayerInput input ) {
+        updateActionKeys();
+        keys.clear();
+        for(int i = 0; i < actionKeys.length; i++)
+            if((input.keyMask & (1 << i)) != 0)
+                keys.put(actionKeys[i], actionKeys[i]);
+        mouseDeltaX = input.mouseDeltaX;
+        mouseDeltaY = input.mouseDeltaY;
+        stickMove.set(input.stickMove);
+        stickLook.set(input.stickLook);
+        isRunning = input.running;
+        setScopeMode(input.scopeMode);
+        for(int i = 0; i < input.weaponSwitches; i++)
+            world.weaponState.switchWeapon();
+        for(int i = 0; i < input.fireEvents; i++)
+            fireWeapon();
+        fireEvents = 0;
+        weaponSwitches = 0;
+    }
+
     public void stickMoveX(float value){
         stickMove.x = value;
     }
@@ -0,0 +1,18 @@
+package com.monstrous.tut3d.inputs;
+
+import com.badlogic.gdx.math.Vector2;
+
+// the input of the player controller for one frame, as recorded by InputRecorder and replayed by InputReplay
+public class PlayerInput {
+    public float deltaTime;
+    public int keyMask;                 // one bit per held action key, see PlayerController.getActionKeys()
+    public float mouseDeltaX;
+    public float mouseDeltaY;
+    public final Vector2 stickMove = new Vector2();
+    public final Vector2 stickLook = new Vector2();
+    public boolean running;             // controller run button
+    public boolean scopeMode;
+    public int fireEvents;              // number of times the weapon was fired this frame
+    public int weaponSwitches;
+    public boolean restart;             // the level was populated again before this frame
+}
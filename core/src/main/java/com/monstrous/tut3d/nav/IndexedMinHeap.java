@@ -0,0 +1,175 @@
+package com.monstrous.tut3d.nav;
+
+
+// binary min-heap of integer items (e.g. node ids) ordered by a float key
+// keeps the heap position of every item so that the key of an item can be decreased in O(log N)
+// the arrays are only reallocated when the capacity grows, so a search does not allocate anything
+
+public class IndexedMinHeap {
+    private int[] heap;         // items in heap order
+    private int[] position;     // position of each item in the heap, -1 if not in the heap
+    private float[] keys;       // key per item
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        heap = new int[0];
+        position = new int[0];
+        keys = new float[0];
+        ensureCapacity(capacity);
+    }
+
+    // make sure items 0 to capacity-1 can be stored
+    public void ensureCapacity(int capacity) {
+        if(capacity <= position.length)
+            return;
+        int oldCapacity = position.length;
+        int[] newHeap = new int[capacity];
+        int[] newPosition = new int[capacity];
+        float[] newKeys = new float[capacity];
+        System.arraycopy(heap, 0, newHeap, 0, size);
+        System.arraycopy(position, 0, newPosition, 0, oldCapacity);
+        System.arraycopy(keys, 0, newKeys, 0, oldCapacity);
+        for(int i = oldCapacity; i < capacity; i++)
+            newPosition[i] = -1;
+        heap = newHeap;
+        position = newPosition;
+        keys = newKeys;
+    }
+
+    // remove all items, costs O(size) rather than O(capacity)
+    public void clear() {
+        for(int i = 0; i < size; i++)
+            position[heap[i]] = -1;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int item) {
+        return position[item] >= 0;
+    }
+
+    public float getKey(int item) {
+        return keys[item];
+    }
+
+    public float peekKey() {
+        return keys[heap[0]];
+    }
+
+    public int peek() {
+        return heap[0];
+    }
+
+    // item at index 0 to size-1, in heap order (i.e. not sorted)
+    public int get(int index) {
+        return heap[index];
+    }
+
+    // change the key of an item in the heap without restoring the heap order, call heapify() after changing the keys
+    public void setKey(int item, float key) {
+        keys[item] = key;
+    }
+
+    // restore the heap order, e.g. after all keys were changed, in O(size)
+    public void heapify() {
+        for(int i = size/2 - 1; i >= 0; i--)
+            siftDown(i);
+    }
+
+    // add a new item or update the key of an item already in the heap
+    public void add(int item, float key) {
+        if(position[item] >= 0) {
+            if(key < keys[item])
+                decreaseKey(item, key);
+            else if(key > keys[item]) {
+                keys[item] = key;
+                siftDown(position[item]);
+            }
+            return;
+        }
+        keys[item] = key;
+        heap[size] = item;
+        position[item] = size;
+        size++;
+        siftUp(size-1);
+    }
+
+    public void decreaseKey(int item, float key) {
+        keys[item] = key;
+        siftUp(position[item]);
+    }
+
+    // remove and return the item with the smallest key
+    public int pop() {
+        int top = heap[0];
+        size--;
+        position[top] = -1;
+        if(size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    // remove an arbitrary item from the heap
+    public void remove(int item) {
+        int pos = position[item];
+        if(pos < 0)
+            return;
+        size--;
+        position[item] = -1;
+        if(pos == size)
+            return;
+        int last = heap[size];
+        heap[pos] = last;
+        position[last] = pos;
+        if(pos > 0 && keys[last] < keys[heap[(pos-1)/2]])
+            siftUp(pos);
+        else
+            siftDown(pos);
+    }
+
+    private void siftUp(int pos) {
+        int item = heap[pos];
+        float key = keys[item];
+        while(pos > 0) {
+            int parent = (pos-1)/2;
+            int parentItem = heap[parent];
+            if(keys[parentItem] <= key)
+                break;
+            heap[pos] = parentItem;
+            position[parentItem] = pos;
+            pos = parent;
+        }
+        heap[pos] = item;
+        position[item] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int item = heap[pos];
+        float key = keys[item];
+        int half = size/2;
+        while(pos < half) {
+            int child = 2*pos+1;
+            int right = child+1;
+            if(right < size && keys[heap[right]] < keys[heap[child]])
+                child = right;
+            int childItem = heap[child];
+            if(key <= keys[childItem])
+                break;
+            heap[pos] = childItem;
+            position[childItem] = pos;
+            pos = child;
+        }
+        heap[pos] = item;
+        position[item] = pos;
+    }
+}
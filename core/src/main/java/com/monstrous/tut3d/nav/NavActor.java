@@ -2,26 +2,107 @@ package com.monstrous.tut3d.nav;
 
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Array;
+import com.monstrous.tut3d.Settings;
 
 public class NavActor {
     public static float CLOSE = 1f;
+    public static int LOOKAHEAD = 8;        // number of nodes to look ahead when following a flow field
+    public static float SHORTCUT_DISTANCE = 20f;    // for a target closer than this, check for a straight route before searching a path
 
     private NavMesh navMesh;
     public Array<NavNode> navNodePath;
     public Array<Vector3> path;
     private int wayPointIndex;
     private Vector3 wayPoint;
+    private int flowFieldVersion = -1;
+    private final Vector3 start = new Vector3();
+    private final Vector3 destination = new Vector3();
+    private final Vector3 requestedDestination = new Vector3();
+    boolean pathPending;                    // a path was requested from the PathService and has not arrived yet
+    private boolean pathChanged;            // set when the PathService delivers a path
+    private int pathVersion;                // obstacle state version when the path was requested
+    private final NavStringPuller stringPuller;
+    private NavPlanner planner;             // keeps its search between calls, created on first use
 
     public NavActor(NavMesh navMesh) {
         this.navMesh = navMesh;
 
         path = new Array<>();
         navNodePath = new Array<>();
+        stringPuller = new NavStringPuller();
     }
 
-    // get next point to aim for
+    // get next point to aim for, when the target moves the path is repaired incrementally (see NavPlanner)
     public Vector3 getWayPoint( Vector3 actorPosition, Vector3 targetPosition ) {
-        boolean rebuilt = navMesh.makePath(actorPosition, targetPosition, navNodePath, path);
+        if(goStraight(actorPosition, targetPosition))
+            return nextWayPoint(true, actorPosition);
+        if(planner == null)
+            planner = new NavPlanner(navMesh);
+        boolean rebuilt = planner.makePath(actorPosition, targetPosition, navNodePath, path);
+        return nextWayPoint(rebuilt, actorPosition);
+    }
+
+    // get next point to aim for, following a flow field towards its target instead of searching a path
+    public Vector3 getWayPoint( Vector3 actorPosition, Vector3 targetPosition, NavFlowField flowField ) {
+        boolean rebuilt = followFlowField(actorPosition, targetPosition, flowField);
+        return nextWayPoint(rebuilt, actorPosition);
+    }
+
+    // get next point to aim for, the path is searched by the path service on a worker thread
+    // until the new path arrives we keep following the current path, or head straight for the target if there is no path yet
+    // a new path is requested when the target moves or when an obstacle appears or disappears on the current path
+    public Vector3 getWayPoint( Vector3 actorPosition, Vector3 targetPosition, PathService pathService ) {
+        if(goStraight(actorPosition, targetPosition))
+            return nextWayPoint(true, actorPosition);
+        NavNode endNode = navMesh.findNodeOnMesh(targetPosition, destination);
+        NavTiles.State obstacles = navMesh.getObstacleState();
+        if(!pathPending && (navNodePath.size == 0 || !destination.epsilonEquals(requestedDestination, NavMesh.TARGET_MARGIN)
+            || !obstacles.isValid(navNodePath, pathVersion))) {
+            NavNode startNode = navMesh.findNodeOnMesh(actorPosition, start);
+            requestedDestination.set(destination);
+            pathVersion = obstacles.version;
+            pathService.request(this, startNode, start, endNode, destination, actorPosition.dst(targetPosition));   // closest actors first
+        }
+        if(path.size == 0) {
+            path.add(new Vector3(actorPosition));
+            path.add(new Vector3(destination));
+            pathChanged = true;
+        }
+        boolean rebuilt = pathChanged;
+        pathChanged = false;
+        return nextWayPoint(rebuilt, actorPosition);
+    }
+
+    // called by the PathService on the main thread when a requested path has arrived
+    // the actor takes over the path arrays of the request and hands back its old ones, so that nothing needs to be copied or allocated
+    void swapPath( PathService.PathRequest request ) {
+        Array<NavNode> nodes = navNodePath;
+        navNodePath = request.nodePath;
+        request.nodePath = nodes;
+        Array<Vector3> points = path;
+        path = request.pointPath;
+        request.pointPath = points;
+        pathPending = false;
+        pathChanged = true;
+    }
+
+    public NavMesh getNavMesh() {
+        return navMesh;
+    }
+
+    // if the target is close and the nav mesh is clear in a straight line (on one slope), head straight for it without searching
+    // the node path is cleared, so that a path is searched again as soon as the straight route is no longer clear
+    private boolean goStraight( Vector3 actorPosition, Vector3 targetPosition ) {
+        if(actorPosition.dst2(targetPosition) > SHORTCUT_DISTANCE * SHORTCUT_DISTANCE || !navMesh.raycast(actorPosition, targetPosition, true))
+            return false;
+        navMesh.findNodeOnMesh(actorPosition, start);
+        navMesh.findNodeOnMesh(targetPosition, destination);
+        navNodePath.clear();
+        stringPuller.makeStraightPath(start, destination, path);
+        return true;
+    }
+
+    private Vector3 nextWayPoint( boolean rebuilt, Vector3 actorPosition ) {
         if(rebuilt) {
             wayPointIndex = 1;  // path[0] is currentPosition
         }
@@ -33,6 +114,46 @@ public class NavActor {
         return wayPoint;
     }
 
+    // make a path of at most LOOKAHEAD nodes along the flow field, returns true if the path was rebuilt
+    // the path is only rebuilt when the field changes, when we move to another node or when the target moves within its node
+    private boolean followFlowField( Vector3 actorPosition, Vector3 targetPosition, NavFlowField flowField ) {
+        NavNode startNode = navMesh.findNode(actorPosition, Settings.navHeight);
+        boolean onMesh = startNode != null;
+        start.set(actorPosition);
+        if(!onMesh) {
+            startNode = navMesh.findClosestNode(actorPosition);    // use a reachable start, since the nav actor is outside the nav mesh
+            start.set(startNode.centre);
+        }
+        NavNode targetNode = flowField.getTargetNode();
+
+        // when off the mesh (e.g. cutting a corner), keep following the current path
+        boolean valid = flowFieldVersion == flowField.getVersion() && navNodePath.size > 0 && path.size > 0 && (!onMesh || navNodePath.first() == startNode);
+        if(valid && navNodePath.peek() == targetNode) {
+            setDestination(targetPosition, targetNode);
+            valid = destination.epsilonEquals(path.peek(), NavMesh.TARGET_MARGIN);
+        }
+        if(valid)
+            return false;
+
+        flowFieldVersion = flowField.getVersion();
+        flowField.getNodePath(startNode, LOOKAHEAD, navNodePath);
+        NavNode endNode = navNodePath.peek();
+        if(endNode == targetNode)
+            setDestination(targetPosition, targetNode);
+        else
+            destination.set(endNode.centre);        // end of the look ahead, the path gets extended once we move to the next node
+        start.y = startNode.centre.y;
+        stringPuller.makePath(start, destination, navNodePath, path);
+        return true;
+    }
+
+    private void setDestination( Vector3 targetPosition, NavNode targetNode ) {
+        destination.set(targetPosition);
+        if(!targetNode.isPointInTriangle(targetPosition, Settings.navHeight))
+            destination.set(targetNode.centre);     // use a reachable destination, since the target is outside the nav mesh
+        destination.y = targetNode.centre.y;
+    }
+
     // get a slope value up to next way point: > 0 we have to climb, == 0 horizontal surface
     // assumes you called getWayPoint() before
     public float getSlope() {
@@ -0,0 +1,229 @@
+package com.monstrous.tut3d.nav;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongMap;
+
+
+// abstract graph over a large nav mesh for hierarchical path finding (in the style of HPA*)
+// the nodes are grouped into clusters of connected nodes. Along the border between two clusters, a few links are chosen
+// as entrances and the two nodes of each entrance link become vertices of the abstract graph.
+// The abstract edges are the entrance links themselves and, within each cluster, the shortest path cost between every
+// pair of its vertices. A query searches the abstract graph and only refines the path inside the clusters on the route
+// (see NavClusterQuery). The graph is not modified after it is built.
+
+public class NavClusterGraph {
+    public static int MIN_NODES = 4096;         // nav meshes with fewer nodes are searched directly
+    public static int CLUSTER_SIZE = 64;        // maximum number of nodes per cluster
+    public static float ENTRANCE_SPACING = 4;   // minimum distance between entrances of a border, in average link lengths
+
+    public final NavMeshData data;
+    public final int numClusters;
+    public final int[] clusterOf;               // cluster id per node
+    public final int numVertices;
+    public final int[] vertexNode;              // node id per abstract vertex
+    public final int[] clusterVertexStart;      // offset into clusterVertices per cluster, one extra entry at the end
+    public final int[] clusterVertices;         // abstract vertices per cluster
+    public final int[] edgeStart;               // offset into the edge arrays per vertex, one extra entry at the end
+    public final int[] edgeTarget;              // abstract vertex per edge
+    public final float[] edgeCost;
+
+    public NavClusterGraph( NavMeshData data ) {
+        this.data = data;
+        int numNodes = data.numNodes;
+
+        // grow clusters of connected nodes breadth first
+        clusterOf = new int[numNodes];
+        for(int i = 0; i < numNodes; i++)
+            clusterOf[i] = -1;
+        int[] queue = new int[numNodes];
+        int clusters = 0;
+        for(int seed = 0; seed < numNodes; seed++) {
+            if(clusterOf[seed] >= 0)
+                continue;
+            int head = 0, tail = 0, size = 0;
+            queue[tail++] = seed;
+            clusterOf[seed] = clusters;
+            while(head < tail && size < CLUSTER_SIZE) {
+                int id = queue[head++];
+                size++;
+                for(int link = data.linkStart[id]; link < data.linkStart[id+1]; link++) {
+                    int n = data.linkNode[link];
+                    if(clusterOf[n] < 0 && tail < CLUSTER_SIZE) {
+                        clusterOf[n] = clusters;
+                        queue[tail++] = n;
+                    }
+                }
+            }
+            clusters++;
+        }
+        numClusters = clusters;
+
+        // choose entrances along each border between two clusters: a border link becomes an entrance unless an
+        // entrance of the same border is already close by, so long borders get more than one entrance
+        float spacing = 0;
+        for(int link = 0; link < data.linkCost.length; link++)
+            spacing += data.linkCost[link];
+        spacing = ENTRANCE_SPACING * spacing / Math.max(1, data.linkCost.length);
+        float spacing2 = spacing * spacing;
+
+        int[] nodeVertex = new int[numNodes];
+        for(int i = 0; i < numNodes; i++)
+            nodeVertex[i] = -1;
+        IntArray vertices = new IntArray();
+        Array<IntArray> targets = new Array<>();
+        Array<FloatArray> costs = new Array<>();
+        LongMap<IntArray> entrances = new LongMap<>();      // per border, the first node of each entrance link
+        for(int a = 0; a < numNodes; a++) {
+            for(int link = data.linkStart[a]; link < data.linkStart[a+1]; link++) {
+                int b = data.linkNode[link];
+                if(b < a || clusterOf[a] == clusterOf[b])
+                    continue;
+                long key = borderKey(clusterOf[a], clusterOf[b]);
+                IntArray border = entrances.get(key);
+                if(border == null) {
+                    border = new IntArray(4);
+                    entrances.put(key, border);
+                }
+                boolean covered = false;
+                for(int i = 0; i < border.size && !covered; i++)
+                    covered = data.centreDistance2(border.get(i), data.centres[3*a], data.centres[3*a+1], data.centres[3*a+2]) < spacing2;
+                if(covered)
+                    continue;
+                border.add(a);
+                int va = addVertex(a, nodeVertex, vertices, targets, costs);
+                int vb = addVertex(b, nodeVertex, vertices, targets, costs);
+                targets.get(va).add(vb);
+                costs.get(va).add(data.linkCost[link]);
+                targets.get(vb).add(va);
+                costs.get(vb).add(data.linkCost[link]);
+            }
+        }
+        numVertices = vertices.size;
+        vertexNode = vertices.toArray();
+
+        // group the vertices per cluster
+        clusterVertexStart = new int[numClusters+1];
+        for(int v = 0; v < numVertices; v++)
+            clusterVertexStart[clusterOf[vertexNode[v]]+1]++;
+        for(int c = 0; c < numClusters; c++)
+            clusterVertexStart[c+1] += clusterVertexStart[c];
+        clusterVertices = new int[numVertices];
+        int[] fill = new int[numClusters];
+        for(int v = 0; v < numVertices; v++) {
+            int c = clusterOf[vertexNode[v]];
+            clusterVertices[clusterVertexStart[c] + fill[c]++] = v;
+        }
+
+        // shortest path cost within the cluster between each pair of its vertices
+        ClusterSearch search = new ClusterSearch(data, clusterOf);
+        for(int c = 0; c < numClusters; c++) {
+            for(int i = clusterVertexStart[c]; i < clusterVertexStart[c+1]; i++) {
+                int v = clusterVertices[i];
+                search.run(vertexNode[v], -1, c, null);
+                for(int j = clusterVertexStart[c]; j < clusterVertexStart[c+1]; j++) {
+                    int u = clusterVertices[j];
+                    if(u != v && search.reached(vertexNode[u])) {
+                        targets.get(v).add(u);
+                        costs.get(v).add(search.getCost(vertexNode[u]));
+                    }
+                }
+            }
+        }
+
+        edgeStart = new int[numVertices+1];
+        for(int v = 0; v < numVertices; v++)
+            edgeStart[v+1] = edgeStart[v] + targets.get(v).size;
+        edgeTarget = new int[edgeStart[numVertices]];
+        edgeCost = new float[edgeStart[numVertices]];
+        for(int v = 0; v < numVertices; v++) {
+            System.arraycopy(targets.get(v).items, 0, edgeTarget, edgeStart[v], targets.get(v).size);
+            System.arraycopy(costs.get(v).items, 0, edgeCost, edgeStart[v], costs.get(v).size);
+        }
+    }
+
+    private static long borderKey( int clusterA, int clusterB ) {
+        int lo = Math.min(clusterA, clusterB);
+        int hi = Math.max(clusterA, clusterB);
+        return ((long)lo << 32) | hi;
+    }
+
+    private static int addVertex( int node, int[] nodeVertex, IntArray vertices, Array<IntArray> targets, Array<FloatArray> costs ) {
+        if(nodeVertex[node] < 0) {
+            nodeVertex[node] = vertices.size;
+            vertices.add(node);
+            targets.add(new IntArray(8));
+            costs.add(new FloatArray(8));
+        }
+        return nodeVertex[node];
+    }
+
+
+    // A* restricted to the nodes of one cluster, or Dijkstra over the whole cluster if there is no goal
+    static class ClusterSearch {
+        private final NavMeshData data;
+        private final int[] clusterOf;
+        private final IndexedMinHeap open;
+        private final float[] cost;
+        private final int[] prev;
+        private final int[] visited;        // generation in which cost and prev were set
+        private int generation;
+
+        ClusterSearch( NavMeshData data, int[] clusterOf ) {
+            this.data = data;
+            this.clusterOf = clusterOf;
+            open = new IndexedMinHeap(data.numNodes);
+            cost = new float[data.numNodes];
+            prev = new int[data.numNodes];
+            visited = new int[data.numNodes];
+        }
+
+        // returns true if the goal was reached, use goal -1 to find the cost to all nodes of the cluster
+        // blocked nodes (see NavTiles) are skipped, except for the goal, blocked may be null
+        boolean run( int from, int goal, int cluster, boolean[] blocked ) {
+            generation++;
+            if(generation == Integer.MAX_VALUE) {       // wrap around, the stamps have to be reset
+                for(int i = 0; i < visited.length; i++)
+                    visited[i] = 0;
+                generation = 1;
+            }
+            open.clear();
+            cost[from] = 0;
+            prev[from] = -1;
+            visited[from] = generation;
+            open.add(from, goal < 0 ? 0 : data.centreDistance(from, goal));
+            while(!open.isEmpty()) {
+                int id = open.pop();
+                if(id == goal)
+                    return true;
+                for(int link = data.linkStart[id]; link < data.linkStart[id+1]; link++) {
+                    int n = data.linkNode[link];
+                    if(clusterOf[n] != cluster || (blocked != null && blocked[n] && n != goal))
+                        continue;
+                    float alt = cost[id] + data.linkCost[link];
+                    if(visited[n] != generation || alt < cost[n]) {
+                        visited[n] = generation;
+                        cost[n] = alt;
+                        prev[n] = id;
+                        open.add(n, goal < 0 ? alt : alt + data.centreDistance(n, goal));
+                    }
+                }
+            }
+            return false;
+        }
+
+        boolean reached( int id ) {
+            return visited[id] == generation;
+        }
+
+        float getCost( int id ) {
+            return cost[id];
+        }
+
+        // previous node on the way from the node where the search started, -1 for that node itself
+        int getPrev( int id ) {
+            return prev[id];
+        }
+    }
+}
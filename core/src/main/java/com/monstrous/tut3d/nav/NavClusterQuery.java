@@ -0,0 +1,146 @@
+package com.monstrous.tut3d.nav;
+
+import com.badlogic.gdx.utils.IntArray;
+
+
+// per-query search state for hierarchical path finding over a NavClusterGraph
+// the start and end node are connected to the vertices of their cluster, then A* runs over the abstract graph and
+// finally each step of the abstract path is refined into nodes, searching only inside one cluster at a time.
+// The result is close to, but not always, the shortest path.
+
+public class NavClusterQuery {
+
+    private final NavClusterGraph graph;
+    private final NavMeshData data;
+    private final NavClusterGraph.ClusterSearch startSearch;
+    private final NavClusterGraph.ClusterSearch endSearch;
+    private final IndexedMinHeap open;
+    private final float[] cost;           // per abstract vertex, the start and end node are vertex numVertices and numVertices+1
+    private final int[] prev;
+    private final int[] visited;
+    private int generation;
+    private final IntArray route;         // abstract vertices from start to end
+    private final IntArray segment;
+    private boolean[] blocked;            // blocked nodes during a query, may be null
+
+    public NavClusterQuery(NavClusterGraph graph) {
+        this.graph = graph;
+        this.data = graph.data;
+        startSearch = new NavClusterGraph.ClusterSearch(data, graph.clusterOf);
+        endSearch = new NavClusterGraph.ClusterSearch(data, graph.clusterOf);
+        int numVertices = graph.numVertices + 2;
+        open = new IndexedMinHeap(numVertices);
+        cost = new float[numVertices];
+        prev = new int[numVertices];
+        visited = new int[numVertices];
+        route = new IntArray();
+        segment = new IntArray();
+    }
+
+    // find a node path from start to end node as node ids, avoiding the blocked nodes of the obstacle state
+    // returns false if both nodes are in the same cluster or the end node cannot be reached, use a direct search in that case
+    // the costs between the vertices of a cluster do not include obstacles, if an obstacle cuts a cluster the refinement
+    // fails and false is returned as well
+    public boolean findPath( int start, int end, IntArray nodePath, NavTiles.State obstacles ) {
+        int startCluster = graph.clusterOf[start];
+        int endCluster = graph.clusterOf[end];
+        if(startCluster == endCluster)
+            return false;
+        blocked = obstacles.blocked;
+        startSearch.run(start, -1, startCluster, blocked);      // costs from the start node to the vertices of its cluster
+        endSearch.run(end, -1, endCluster, blocked);            // and from the vertices of the end cluster to the end node
+        if(!searchAbstract(start, end, startCluster, endCluster))
+            return false;
+
+        nodePath.clear();
+        // start node to the first vertex, following the search from the start node backwards
+        segment.clear();
+        for(int id = graph.vertexNode[route.get(1)]; id >= 0; id = startSearch.getPrev(id))
+            segment.add(id);
+        for(int i = segment.size-1; i >= 0; i--)
+            nodePath.add(segment.get(i));
+        // between vertices: either an entrance link or a path inside a cluster
+        for(int i = 1; i < route.size-2; i++) {
+            int a = graph.vertexNode[route.get(i)];
+            int b = graph.vertexNode[route.get(i+1)];
+            int cluster = graph.clusterOf[a];
+            if(graph.clusterOf[b] != cluster)
+                nodePath.add(b);
+            else {
+                if(!startSearch.run(a, b, cluster, blocked))
+                    return false;
+                segment.clear();
+                for(int id = b; id != a; id = startSearch.getPrev(id))
+                    segment.add(id);
+                for(int k = segment.size-1; k >= 0; k--)
+                    nodePath.add(segment.get(k));
+            }
+        }
+        // last vertex to the end node, the search from the end node leads there directly
+        for(int id = endSearch.getPrev(graph.vertexNode[route.get(route.size-2)]); id >= 0; id = endSearch.getPrev(id))
+            nodePath.add(id);
+        return true;
+    }
+
+    // A* over the abstract graph from the start node to the end node, fills the route
+    private boolean searchAbstract( int start, int end, int startCluster, int endCluster ) {
+        generation++;
+        if(generation == Integer.MAX_VALUE) {       // wrap around, the stamps have to be reset
+            for(int i = 0; i < visited.length; i++)
+                visited[i] = 0;
+            generation = 1;
+        }
+        open.clear();
+        int startVertex = graph.numVertices;
+        int endVertex = graph.numVertices + 1;
+        cost[startVertex] = 0;
+        prev[startVertex] = -1;
+        visited[startVertex] = generation;
+        open.add(startVertex, data.centreDistance(start, end));
+
+        boolean found = false;
+        while(!open.isEmpty()) {
+            int v = open.pop();
+            if(v == endVertex) {
+                found = true;
+                break;
+            }
+            if(v == startVertex) {
+                for(int i = graph.clusterVertexStart[startCluster]; i < graph.clusterVertexStart[startCluster+1]; i++) {
+                    int u = graph.clusterVertices[i];
+                    int node = graph.vertexNode[u];
+                    if(startSearch.reached(node))
+                        relax(v, u, startSearch.getCost(node), node, end);
+                }
+                continue;
+            }
+            for(int e = graph.edgeStart[v]; e < graph.edgeStart[v+1]; e++) {
+                int u = graph.edgeTarget[e];
+                relax(v, u, graph.edgeCost[e], graph.vertexNode[u], end);
+            }
+            int node = graph.vertexNode[v];
+            if(graph.clusterOf[node] == endCluster && endSearch.reached(node))
+                relax(v, endVertex, endSearch.getCost(node), end, end);
+        }
+        if(!found)
+            return false;
+
+        route.clear();
+        for(int v = endVertex; v >= 0; v = prev[v])
+            route.add(v);
+        route.reverse();
+        return true;
+    }
+
+    private void relax( int from, int to, float stepCost, int toNode, int end ) {
+        if(blocked != null && blocked[toNode] && toNode != end)
+            return;
+        float alt = cost[from] + stepCost;
+        if(visited[to] != generation || alt < cost[to]) {
+            visited[to] = generation;
+            cost[to] = alt;
+            prev[to] = from;
+            open.add(to, alt + data.centreDistance(toNode, end));
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.monstrous.tut3d.nav;
+
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+
+
+// local avoidance between characters that follow the nav mesh, so that they steer around each other instead of bumping
+// into each other and relying on the physics contacts to separate them.
+// The owner of an agent sets its position and velocity every frame and calls update(), which puts the agents in a
+// spatial hash: a uniform grid of cells in x,z, hashed to a fixed number of buckets, so the grid needs no bounds. The agents
+// are sorted per bucket with a counting sort into flat arrays (like the links of NavMeshData), which takes linear time.
+// steer() then adjusts the direction an agent wants to move in, using its neighbours from the hash:
+// - separation: move away from agents that are too close
+// - avoidance: look ahead at where we would pass the neighbour closest, and steer sideways if that is too close
+//   (a simple form of velocity obstacles, the other agent is assumed to keep its velocity)
+
+public class NavCrowd {
+    public static float CELL_SIZE = 2f;             // grid cell width in world units, about the neighbour distance
+    public static float LOOKAHEAD_TIME = 1.5f;      // seconds to look ahead for collisions
+    public static float MARGIN = 0.3f;              // extra distance to keep between agents
+    public static float SEPARATION_WEIGHT = 3f;
+    public static float AVOIDANCE_WEIGHT = 1f;
+
+    // a character in the crowd
+    public static class Agent {
+        public final Vector3 position = new Vector3();
+        public final Vector3 velocity = new Vector3();
+        public float radius;
+        int index;                          // in the arrays of the last update
+    }
+
+    private final Array<Agent> agents = new Array<>();
+    private int numAgents;                  // at the last update
+    private float[] x, z, vx, vz, radius;   // per agent
+    private int[] bucketStart;              // offset into bucketAgents per bucket, one extra entry at the end
+    private int[] bucketAgents;             // agent indices sorted by bucket
+    private int[] agentBucket;              // bucket per agent
+    private int[] visited;                  // query stamp per agent, a bucket can be hit by more than one cell
+    private int stamp;
+    private float maxRadius;
+
+    public NavCrowd() {
+        allocate(16);
+    }
+
+    public Agent addAgent( float radius ) {
+        Agent agent = new Agent();
+        agent.radius = radius;
+        agent.index = -1;
+        agents.add(agent);
+        return agent;
+    }
+
+    public void removeAgent( Agent agent ) {
+        agents.removeValue(agent, true);
+        agent.index = -1;
+    }
+
+    public int getNumAgents() {
+        return agents.size;
+    }
+
+    // put the agents in the spatial hash, to be called once per frame after the positions and velocities are set
+    public void update() {
+        numAgents = agents.size;
+        if(numAgents > agentBucket.length)
+            allocate(Math.max(numAgents, 2 * agentBucket.length));
+        int numBuckets = bucketStart.length - 1;
+        java.util.Arrays.fill(bucketStart, 0);
+        maxRadius = 0;
+        for(int i = 0; i < numAgents; i++) {
+            Agent agent = agents.get(i);
+            agent.index = i;
+            x[i] = agent.position.x;
+            z[i] = agent.position.z;
+            vx[i] = agent.velocity.x;
+            vz[i] = agent.velocity.z;
+            radius[i] = agent.radius;
+            maxRadius = Math.max(maxRadius, agent.radius);
+            agentBucket[i] = bucket(cell(x[i]), cell(z[i]), numBuckets);
+            bucketStart[agentBucket[i] + 1]++;
+        }
+        for(int b = 0; b < numBuckets; b++)
+            bucketStart[b+1] += bucketStart[b];
+        for(int i = 0; i < numAgents; i++)
+            bucketAgents[--bucketStart[agentBucket[i] + 1]] = i;    // fill each bucket from its end, this moves the end to the start
+        for(int b = 0; b < numBuckets; b++)
+            bucketStart[b] = bucketStart[b+1];
+        bucketStart[numBuckets] = numAgents;
+    }
+
+    // adjust the direction (in the x,z plane) in which an agent wants to move at the given speed, to avoid its neighbours
+    // the direction is normalized, it stays unchanged if no neighbour is in the way
+    public Vector3 steer( Agent agent, Vector3 direction, float speed ) {
+        int self = agent.index;
+        if(self < 0)                        // not in the hash yet
+            return direction;
+        float dirX = direction.x;
+        float dirZ = direction.z;
+        float length = (float)Math.sqrt(dirX*dirX + dirZ*dirZ);
+        if(length < 0.0001f)
+            return direction;
+        dirX /= length;
+        dirZ /= length;
+        float wantX = dirX * speed;         // the velocity we want
+        float wantZ = dirZ * speed;
+
+        float range = agent.radius + maxRadius + MARGIN + speed * LOOKAHEAD_TIME;
+        float steerX = 0, steerZ = 0;
+        int numBuckets = bucketStart.length - 1;
+        stamp++;
+        int cx0 = cell(x[self] - range), cx1 = cell(x[self] + range);
+        int cz0 = cell(z[self] - range), cz1 = cell(z[self] + range);
+        for(int cz = cz0; cz <= cz1; cz++) {
+            for(int cx = cx0; cx <= cx1; cx++) {
+                int b = bucket(cx, cz, numBuckets);
+                for(int k = bucketStart[b]; k < bucketStart[b+1]; k++) {
+                    int other = bucketAgents[k];
+                    if(other == self || visited[other] == stamp)
+                        continue;
+                    visited[other] = stamp;
+                    float px = x[other] - x[self];
+                    float pz = z[other] - z[self];
+                    float distance2 = px*px + pz*pz;
+                    if(distance2 > range * range)
+                        continue;
+                    float distance = (float)Math.sqrt(distance2);
+                    float minDistance = agent.radius + radius[other] + MARGIN;
+
+                    // separation: push away, stronger when closer
+                    if(distance < minDistance) {
+                        float push = SEPARATION_WEIGHT * (1f - distance / minDistance);
+                        if(distance > 0.0001f) {
+                            steerX -= push * px / distance;
+                            steerZ -= push * pz / distance;
+                        }
+                        else {                          // on top of each other, split by index
+                            steerX += self < other ? -push * dirZ : push * dirZ;
+                            steerZ += self < other ? push * dirX : -push * dirX;
+                        }
+                    }
+
+                    // avoidance: closest approach with the relative velocity, within the look ahead time
+                    float wx = wantX - vx[other];
+                    float wz = wantZ - vz[other];
+                    float w2 = wx*wx + wz*wz;
+                    if(w2 < 0.0001f)
+                        continue;
+                    float t = (px*wx + pz*wz) / w2;
+                    if(t <= 0 || t > LOOKAHEAD_TIME)    // moving apart, or too far ahead
+                        continue;
+                    float closestX = px - wx * t;       // the neighbour relative to us at the closest approach
+                    float closestZ = pz - wz * t;
+                    float closest = (float)Math.sqrt(closestX*closestX + closestZ*closestZ);
+                    if(closest >= minDistance)
+                        continue;
+                    float avoid = AVOIDANCE_WEIGHT * (1f - closest / minDistance) * (1f - t / LOOKAHEAD_TIME);
+                    if(closest > 0.0001f) {
+                        steerX -= avoid * closestX / closest;
+                        steerZ -= avoid * closestZ / closest;
+                    }
+                    else {                              // head on: both keep to the right
+                        steerX -= avoid * dirZ;
+                        steerZ += avoid * dirX;
+                    }
+                }
+            }
+        }
+        float newX = dirX + steerX;
+        float newZ = dirZ + steerZ;
+        float newLength = (float)Math.sqrt(newX*newX + newZ*newZ);
+        if(newLength < 0.0001f)             // steering cancels the direction, stand still rather than turn around
+            return direction.set(0, 0, 0);
+        return direction.set(newX / newLength, 0, newZ / newLength);
+    }
+
+    private static int cell( float coordinate ) {
+        return (int)Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static int bucket( int cx, int cz, int numBuckets ) {
+        int hash = cx * 73856093 ^ cz * 19349663;
+        return (hash & 0x7fffffff) % numBuckets;
+    }
+
+    private void allocate( int capacity ) {
+        x = new float[capacity];
+        z = new float[capacity];
+        vx = new float[capacity];
+        vz = new float[capacity];
+        radius = new float[capacity];
+        agentBucket = new int[capacity];
+        bucketAgents = new int[capacity];
+        visited = new int[capacity];
+        bucketStart = new int[2 * capacity + 1];       // about half the buckets are used
+    }
+}
@@ -0,0 +1,164 @@
+package com.monstrous.tut3d.nav;
+
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.monstrous.tut3d.Settings;
+
+
+// distance field over the nav mesh towards a shared target (e.g. the player)
+// for every node it keeps the distance to the nearest source node and the next node to move to.
+// Instead of each actor searching its own path to the same target, actors just follow the next hops.
+// The field is only recomputed when the target moves to a different node or when the blocked nodes change (see NavTiles).
+// When only the target moves, the old distances are repaired instead of recomputed (see moveTarget).
+// Blocked nodes get a distance but are not passed through.
+
+public class NavFlowField {
+
+    private final NavMesh navMesh;
+    private final NavMeshData data;
+    private final IndexedMinHeap open;
+    private final float[] distance;         // distance via node centres to the nearest source
+    private final int[] nextHop;            // next node id towards the nearest source, -1 for a source or an unreachable node
+    private NavNode targetNode;
+    private NavTiles.State obstacles;       // blocked nodes the field was computed with
+    private int version;                    // incremented on each recompute
+    private final IntArray targetPath;      // nodes between the new and the old target, used by moveTarget
+
+    public NavFlowField(NavMesh navMesh) {
+        this.navMesh = navMesh;
+        data = navMesh.getData();
+        int numNodes = data.numNodes;
+        open = new IndexedMinHeap(numNodes);
+        distance = new float[numNodes];
+        nextHop = new int[numNodes];
+        targetPath = new IntArray();
+        clearSources();
+    }
+
+    // update the field for the target position, returns true if the field was recomputed
+    public boolean update( Vector3 targetPosition ) {
+        NavNode node = navMesh.findNode(targetPosition, Settings.navHeight);
+        if(node == null)
+            node = navMesh.findClosestNode(targetPosition);
+        if(node == targetNode && obstacles == navMesh.getObstacleState())
+            return false;
+        if(!moveTarget(node)) {
+            clearSources();
+            addSource(node, 0);
+            compute();
+        }
+        targetNode = node;
+        return true;
+    }
+
+    // Re-root the field from the old target node to a new one, keeping the old distances.
+    // The old distance of a node plus the distance between the two targets is the length of a real path
+    // to the new target (via the old target), so it is an upper bound of the new distance and the old next hop stays valid.
+    // After reversing the next hops on the path between the targets, Dijkstra only has to visit the nodes
+    // that get closer to the new target, i.e. the side of the mesh the target moved to.
+    // Returns false if the field has to be computed from scratch.
+    private boolean moveTarget( NavNode node ) {
+        if(targetNode == null || obstacles != navMesh.getObstacleState())
+            return false;
+        float offset = distance[node.id];            // distance between the two targets
+        if(offset == Float.MAX_VALUE)
+            return false;
+        if(obstacles.blocked != null && obstacles.blocked[targetNode.id])    // the old target was only passable as a source
+            return false;
+
+        targetPath.clear();
+        for(int id = node.id; id >= 0; id = nextHop[id])
+            targetPath.add(id);
+        for(int i = 0; i < distance.length; i++) {
+            if(distance[i] != Float.MAX_VALUE)
+                distance[i] += offset;
+        }
+        open.clear();
+        int prev = -1;
+        for(int i = 0; i < targetPath.size; i++) {
+            int id = targetPath.get(i);
+            float dist = 2f*offset - distance[id];     // offset minus the old distance
+            distance[id] = dist;
+            nextHop[id] = prev;
+            open.add(id, dist);
+            prev = id;
+        }
+        compute();
+        return true;
+    }
+
+    public void clearSources() {
+        open.clear();
+        for(int i = 0; i < distance.length; i++) {
+            distance[i] = Float.MAX_VALUE;
+            nextHop[i] = -1;
+        }
+    }
+
+    // add a source node with an initial distance, e.g. to have more than one target
+    public void addSource( NavNode node, float initialDistance ) {
+        if(initialDistance < distance[node.id]) {
+            distance[node.id] = initialDistance;
+            open.add(node.id, initialDistance);
+        }
+    }
+
+    // Dijkstra's algorithm from all the source nodes at once
+    public void compute() {
+        final int[] linkStart = data.linkStart;
+        final int[] linkNode = data.linkNode;
+        final float[] linkCost = data.linkCost;
+        obstacles = navMesh.getObstacleState();
+        final boolean[] blocked = obstacles.blocked;
+        while(!open.isEmpty()) {
+            int id = open.pop();
+            if(blocked != null && blocked[id] && nextHop[id] >= 0)     // sources are expanded even if blocked
+                continue;
+            for(int link = linkStart[id]; link < linkStart[id+1]; link++) {
+                int n = linkNode[link];
+                float alt = distance[id] + linkCost[link];
+                if(alt < distance[n]) {
+                    distance[n] = alt;
+                    nextHop[n] = id;
+                    open.add(n, alt);
+                }
+            }
+        }
+        version++;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public NavNode getTargetNode() {
+        return targetNode;
+    }
+
+    public boolean isReachable( NavNode node ) {
+        return distance[node.id] != Float.MAX_VALUE;
+    }
+
+    public float getDistance( NavNode node ) {
+        return distance[node.id];
+    }
+
+    // next node on the way to the target, or null if node is a source or cannot reach the target
+    public NavNode getNextNode( NavNode node ) {
+        int next = nextHop[node.id];
+        if(next < 0)
+            return null;
+        return navMesh.navNodes.get(next);
+    }
+
+    // follow the next hops from the start node, for at most maxNodes nodes
+    public void getNodePath( NavNode startNode, int maxNodes, Array<NavNode> nodePath ) {
+        nodePath.clear();
+        NavNode node = startNode;
+        while(node != null && nodePath.size < maxNodes) {
+            nodePath.add(node);
+            node = getNextNode(node);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.monstrous.tut3d.nav;
+
+import com.badlogic.gdx.math.Vector3;
+
+
+// uniform 2d grid over the nav mesh in the XZ plane to speed up point location
+// each cell has a list of the triangles whose footprint overlaps the cell and a list of the triangles whose centre is in the cell.
+// the lists are stored in one flat array per kind, with an offset per cell (like a compressed sparse row matrix).
+// the grid only reads the nav mesh data and is not modified after it is built, so it can be used from any thread.
+
+public class NavGrid {
+    private static final int CELLS_PER_NODE = 4;      // upper limit on the number of cells relative to the number of nodes
+
+    private final NavMeshData data;
+    private float minX, minZ;
+    private float cellSize;
+    private int cols, rows;
+    private int[] footprintStart;       // offset per cell into footprintNodes, one extra entry at the end
+    private int[] footprintNodes;       // node ids per cell, in increasing id order
+    private int[] centreStart;
+    private int[] centreNodes;
+
+    // maxHeight: the largest distance above a triangle that will be used in findNode, needed to account for the projection
+    // of the point onto a sloped triangle
+    public NavGrid(NavMeshData data, float maxHeight) {
+        this.data = data;
+        build(maxHeight);
+    }
+
+    private void build(float maxHeight) {
+        int numNodes = data.numNodes;
+        float[] corners = data.corners;
+        float maxX, maxZ;
+        minX = minZ = Float.MAX_VALUE;
+        maxX = maxZ = -Float.MAX_VALUE;
+        float sumExtent = 0;
+        for(int id = 0; id < numNodes; id++) {
+            int k = 9*id;
+            float x0 = Math.min(corners[k], Math.min(corners[k+3], corners[k+6]));
+            float x1 = Math.max(corners[k], Math.max(corners[k+3], corners[k+6]));
+            float z0 = Math.min(corners[k+2], Math.min(corners[k+5], corners[k+8]));
+            float z1 = Math.max(corners[k+2], Math.max(corners[k+5], corners[k+8]));
+            minX = Math.min(minX, x0);
+            minZ = Math.min(minZ, z0);
+            maxX = Math.max(maxX, x1);
+            maxZ = Math.max(maxZ, z1);
+            sumExtent += Math.max(x1-x0, z1-z0);
+        }
+        if(numNodes == 0) {
+            minX = minZ = maxX = maxZ = 0;
+        }
+        float width = Math.max(maxX - minX, 0.001f);
+        float depth = Math.max(maxZ - minZ, 0.001f);
+
+        // use the average triangle size as cell size, but limit the number of cells
+        cellSize = numNodes == 0 ? Math.max(width, depth) : sumExtent / numNodes;
+        float minCellSize = (float)Math.sqrt(width * depth / (CELLS_PER_NODE * Math.max(numNodes, 1)));
+        cellSize = Math.max(cellSize, minCellSize);
+        cols = (int)(width / cellSize) + 1;
+        rows = (int)(depth / cellSize) + 1;
+        int numCells = cols * rows;
+
+        // first pass: count entries per cell, second pass: fill the lists
+        footprintStart = new int[numCells+1];
+        centreStart = new int[numCells+1];
+        for(int pass = 0; pass < 2; pass++) {
+            int[] footprintFill = null;
+            int[] centreFill = null;
+            if(pass == 1) {
+                footprintFill = prefixSum(footprintStart);
+                centreFill = prefixSum(centreStart);
+                footprintNodes = new int[footprintStart[numCells]];
+                centreNodes = new int[centreStart[numCells]];
+            }
+            for(int id = 0; id < numNodes; id++) {
+                int k = 9*id;
+                float nx = data.normals[3*id];
+                float nz = data.normals[3*id+2];
+                // widen the footprint of sloped triangles, because a point above the triangle is projected along the normal
+                float margin = 0.001f + maxHeight * (float)Math.sqrt(nx*nx + nz*nz);
+                int c0 = column(Math.min(corners[k], Math.min(corners[k+3], corners[k+6])) - margin);
+                int c1 = column(Math.max(corners[k], Math.max(corners[k+3], corners[k+6])) + margin);
+                int r0 = row(Math.min(corners[k+2], Math.min(corners[k+5], corners[k+8])) - margin);
+                int r1 = row(Math.max(corners[k+2], Math.max(corners[k+5], corners[k+8])) + margin);
+                for(int r = r0; r <= r1; r++) {
+                    for(int c = c0; c <= c1; c++) {
+                        int cell = r * cols + c;
+                        if(pass == 0)
+                            footprintStart[cell]++;
+                        else
+                            footprintNodes[footprintFill[cell]++] = id;
+                    }
+                }
+                int cell = row(data.centres[3*id+2]) * cols + column(data.centres[3*id]);
+                if(pass == 0)
+                    centreStart[cell]++;
+                else
+                    centreNodes[centreFill[cell]++] = id;
+            }
+        }
+    }
+
+    // convert counts per cell to start offsets, returns a copy of the offsets to use as fill pointers
+    private static int[] prefixSum(int[] counts) {
+        int sum = 0;
+        for(int i = 0; i < counts.length; i++) {
+            int count = counts[i];
+            counts[i] = sum;
+            sum += count;
+        }
+        return counts.clone();
+    }
+
+    private int column(float x) {
+        int c = (int)Math.floor((x - minX) / cellSize);
+        return Math.max(0, Math.min(cols-1, c));
+    }
+
+    private int row(float z) {
+        int r = (int)Math.floor((z - minZ) / cellSize);
+        return Math.max(0, Math.min(rows-1, r));
+    }
+
+    // find the id of the node that contains the point (see NavNode.isPointInTriangle), or -1
+    // only the triangles overlapping the point's cell are tested, if more than one node qualifies, the one with the lowest id is returned.
+    // a point outside the grid uses the nearest border cell: the widened footprint of a sloped triangle at the border
+    // can reach beyond the grid and is stored in the border cells (see build).
+    public int findNode( Vector3 point, float maxDist ) {
+        int cell = row(point.z) * cols + column(point.x);
+        for(int i = footprintStart[cell]; i < footprintStart[cell+1]; i++) {
+            int id = footprintNodes[i];
+            if(data.isPointInTriangle(id, point.x, point.y, point.z, maxDist))
+                return id;
+        }
+        return -1;
+    }
+
+    // find the id of the node with the centre closest to the point, or -1 for an empty mesh
+    // search rings of cells around the point until no unvisited cell can contain a closer centre
+    public int findClosestNode( Vector3 point ) {
+        int col = column(point.x);
+        int row = row(point.z);
+        int closest = -1;
+        float minDist = Float.MAX_VALUE;
+        int maxRing = Math.max(cols, rows);
+        for(int ring = 0; ring <= maxRing; ring++) {
+            int c0 = col - ring;
+            int c1 = col + ring;
+            int r0 = row - ring;
+            int r1 = row + ring;
+            for(int r = Math.max(r0, 0); r <= Math.min(r1, rows-1); r++) {
+                boolean edgeRow = (r == r0 || r == r1);
+                for(int c = Math.max(c0, 0); c <= Math.min(c1, cols-1); c++) {
+                    if(!edgeRow && c != c0 && c != c1)      // only visit the outline of the ring
+                        continue;
+                    int cell = r * cols + c;
+                    for(int i = centreStart[cell]; i < centreStart[cell+1]; i++) {
+                        int id = centreNodes[i];
+                        float len2 = data.centreDistance2(id, point.x, point.y, point.z);
+                        if(len2 < minDist || (len2 == minDist && id < closest)) {
+                            minDist = len2;
+                            closest = id;
+                        }
+                    }
+                }
+            }
+            // horizontal distance from the point to the nearest cell that has not been visited yet
+            float bound = Float.MAX_VALUE;
+            if(c0 > 0)
+                bound = Math.min(bound, point.x - (minX + c0 * cellSize));
+            if(c1 < cols-1)
+                bound = Math.min(bound, (minX + (c1+1) * cellSize) - point.x);
+            if(r0 > 0)
+                bound = Math.min(bound, point.z - (minZ + r0 * cellSize));
+            if(r1 < rows-1)
+                bound = Math.min(bound, (minZ + (r1+1) * cellSize) - point.z);
+            if(bound == Float.MAX_VALUE)        // all cells visited
+                break;
+            if(closest >= 0 && bound > 0 && minDist <= bound * bound)
+                break;
+        }
+        return closest;
+    }
+}
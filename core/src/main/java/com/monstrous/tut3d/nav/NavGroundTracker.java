@@ -0,0 +1,55 @@
+package com.monstrous.tut3d.nav;
+
+import com.badlogic.gdx.math.Vector3;
+import com.monstrous.tut3d.Settings;
+
+
+// the nav mesh triangle under a moving character, as a cheap alternative to casting a physics ray down every frame
+// the triangle of the previous update is kept. When the character moves, the triangle under the new position is found by
+// walking over the shared edges from the old one, which normally takes a step or two.
+// The spatial index of the nav mesh is only used when the walk fails or ends on another level than the character
+// (e.g. after dropping off a ledge or jumping onto a walkway), or when the character comes back onto the mesh.
+
+public class NavGroundTracker {
+    private final NavMesh navMesh;
+    private int node = -1;                  // triangle under the last position, -1 if off the mesh
+    private float x, z;                     // last position
+    public float height;                    // height of the nav mesh under the last position
+    public final Vector3 normal = new Vector3();    // normal of the triangle under the last position
+
+    public NavGroundTracker( NavMesh navMesh ) {
+        this.navMesh = navMesh;
+    }
+
+    public NavMesh getNavMesh() {
+        return navMesh;
+    }
+
+    // find the triangle under the position, returns false if there is none at most Settings.navHeight below it
+    // sets height and normal
+    public boolean update( Vector3 position ) {
+        NavMeshData data = navMesh.getData();
+        if(node >= 0)
+            node = data.walk(node, x, z, position.x, position.z, null, false);
+        // on another level than the walked node (e.g. on a walkway over it): look it up, if that fails the walked node is kept
+        // as the starting point of the next walk
+        if(node < 0 || !isAbove(data, node, position)) {
+            NavNode under = navMesh.findNodeUnder(position);
+            if(under != null)
+                node = under.id;
+        }
+        if(node < 0)
+            return false;
+        x = position.x;
+        z = position.z;
+        height = data.getHeight(node, x, z);
+        normal.set(data.normals[3*node], data.normals[3*node+1], data.normals[3*node+2]);
+        return isAbove(data, node, position);
+    }
+
+    // is the position above the plane of the node, by at most Settings.navHeight (like for findNode)?
+    private static boolean isAbove( NavMeshData data, int id, Vector3 position ) {
+        float height = data.getHeight(id, position.x, position.z);
+        return position.y >= height && position.y <= height + Settings.navHeight;
+    }
+}
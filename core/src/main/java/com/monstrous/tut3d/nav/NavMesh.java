@@ -1,6 +1,7 @@
 package com.monstrous.tut3d.nav;
 
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Array;
 import com.monstrous.tut3d.Settings;
@@ -8,116 +9,150 @@ import com.monstrous.tut3d.Settings;
 public class NavMesh {
     public final static float TARGET_MARGIN = 1f;       // target movement allowed before path recalculation
 
-    public Array<NavNode> navNodes;         // node in nav mesh (triangles)
+    public Array<NavNode> navNodes;         // node in nav mesh (triangles), indexed by node id
+    private NavMeshData data;               // compact copy of the nodes for queries
+    private NavGrid grid;                   // spatial index for point location
+    private NavClusterGraph clusterGraph;   // for hierarchical path finding on large nav meshes, else null
+    private NavTiles tiles;                 // dynamic obstacles
+    private NavQuery query;                 // for path queries on the main thread
+    private final NavPathCache pathCache;   // shared by all queries on this nav mesh
 
     // create a navigation mesh from the mesh of a model instance
     //
     public NavMesh() {
         navNodes = new Array<>();
+        pathCache = new NavPathCache();
     }
 
-    public NavNode findNode( Vector3 point, float maxDist ){
-        for(NavNode node : navNodes ) {
-            if(node.isPointInTriangle(point, maxDist)) {
-                return node;
-            }
+    // build the query data and the spatial index, needs to be called after all nodes and links are added
+    // after this the nav mesh should not be modified, so that it can be shared by queries on different threads
+    public void buildData() {
+        pathCache.clear();      // node ids may have changed
+        query = null;
+        data = new NavMeshData(navNodes);
+        grid = new NavGrid(data, Settings.navHeight);
+        tiles = new NavTiles(data);
+        clusterGraph = null;
+        if(data.numNodes >= NavClusterGraph.MIN_NODES) {
+            clusterGraph = new NavClusterGraph(data);
+            Gdx.app.log("Nav clusters:", ""+clusterGraph.numClusters+" vertices: "+clusterGraph.numVertices);
         }
-        return null;
+    }
+
+    public NavMeshData getData() {
+        if(data == null)
+            buildData();
+        return data;
+    }
+
+    public NavPathCache getPathCache() {
+        return pathCache;
+    }
+
+    public NavTiles getTiles() {
+        if(data == null)
+            buildData();
+        return tiles;
+    }
+
+    // blocked nodes to use for a query, can be called from any thread once the data is built
+    public NavTiles.State getObstacleState() {
+        return getTiles().getState();
+    }
+
+    // register a dynamic obstacle, its footprint is to be updated by the caller
+    public NavObstacle addObstacle() {
+        return getTiles().addObstacle();
+    }
+
+    public void removeObstacle( NavObstacle obstacle ) {
+        getTiles().removeObstacle(obstacle);
+    }
+
+    // rebuild the tiles under obstacles that have changed, to be called once per frame
+    // paths that cross those tiles are searched again when they are next used
+    public boolean updateObstacles() {
+        return getTiles().update();
+    }
+
+    public NavClusterGraph getClusterGraph() {
+        if(data == null)
+            buildData();
+        return clusterGraph;
+    }
+
+    public NavNode findNode( Vector3 point, float maxDist ){
+        if(grid == null)
+            buildData();
+        int id = grid.findNode(point, maxDist);
+        return id < 0 ? null : navNodes.get(id);
     }
 
     // find closest node - in case point is not in a node (off-piste)
     public NavNode findClosestNode( Vector3 point ){
-        float minDist = Float.MAX_VALUE;
-        NavNode closest = null;
-        for(NavNode node : navNodes ) {
-            float len2 = point.dst2(node.centre);
-            if(len2 < minDist) {
-                minDist = len2;
-                closest = node;
-            }
-        }
-        return closest;
+        if(grid == null)
+            buildData();
+        int id = grid.findClosestNode(point);
+        return id < 0 ? null : navNodes.get(id);
     }
 
     // find the shortest node path from start to end node
     public void findNodePath( NavNode startNode, NavNode endNode, Array<NavNode> nodePath ) {
-
-        // Dijkstra's algorithm
-        //
-        Array<NavNode> Q = new Array<>();
-
-        for(int i = 0; i < navNodes.size; i++){
-            NavNode node = navNodes.get(i);
-            node.steps = Integer.MAX_VALUE;
-            node.prev = null;
-            Q.add(node);
-        }
-        startNode.steps = 0;
-        startNode.prev = null;
-        NavNode node = null;
-
-        while(Q.size > 0) {
-            // find node in Q with minimal distance
-            int minSteps = Integer.MAX_VALUE;
-            node = null;
-            for(NavNode n : Q){
-                if(n.steps < minSteps){
-                    minSteps = n.steps;
-                    node = n;
-                }
-            }
-            if(node == endNode)    // arrived at end node, we can stop now
-                break;
-            Q.removeValue(node, true);
-            for(NavNode nbor :  node.neighbours){
-                if(Q.contains(nbor, true)){
-                    int alt = node.steps + 1;
-                    if(alt < nbor.steps){
-                        nbor.steps = alt;
-                        nbor.prev = node;
-                    }
-                }
-            }
-        } // while
-
-
-        nodePath.clear();
-        while (node != null) {
-            nodePath.add(node);
-            node = node.prev;
-        }
-        nodePath.reverse();
+        if(query == null)
+            query = new NavQuery(this);
+        query.findPath(startNode, endNode, nodePath);
     }
 
     private Vector3 start = new Vector3();
     private Vector3 destination = new Vector3();
 
-    // returns true if path was rebuilt
-    public boolean  makePath( Vector3 startPoint, Vector3 targetPoint, Array<NavNode> navNodePath, Array<Vector3> pointPath ) {
-        NavNode startNode = findNode(startPoint, Settings.navHeight);
-        NavNode endNode = findNode(targetPoint, Settings.navHeight);
-
-        start.set(startPoint);
-        if(startNode == null) {
-            startNode = findClosestNode(startPoint);        // use a reachable start, since the nav actor is outside the nav mesh
-            start.set(startNode.centre);
+    // find the node under a point, or the closest node if the point is outside the nav mesh
+    // onMesh is set to a reachable point at node height: the point itself or the centre of the closest node
+    public NavNode findNodeOnMesh( Vector3 point, Vector3 onMesh ) {
+        NavNode node = findNode(point, Settings.navHeight);
+        onMesh.set(point);
+        if(node == null) {
+            node = findClosestNode(point);
+            onMesh.set(node.centre);
         }
+        onMesh.y = node.centre.y;           // on a slope this will be an approximation
+        return node;
+    }
 
-        destination.set(targetPoint);
-        if(endNode == null) {
-            endNode = findClosestNode(targetPoint);
-            destination.set(endNode.centre);               // use a reachable destination, since the target is outside the nav mesh
-        }
+    // is the straight line from start to end on the nav mesh? i.e. it does not cross a border or a blocked node
+    // both points should be above the nav mesh, like for findNode()
+    // if sameSlope is set, the line must also stay on one slope, e.g. for an actor that needs a way point to start climbing
+    public boolean raycast( Vector3 startPoint, Vector3 endPoint, boolean sameSlope ) {
+        NavNode startNode = findNodeUnder(startPoint);
+        if(startNode == null)
+            return false;
+        return data.raycast(startNode.id, startPoint.x, startPoint.z, endPoint.x, endPoint.y, endPoint.z, Settings.navHeight,
+            getObstacleState(), sameSlope) >= 0;
+    }
 
-        // put start and end points at node height (on a slope this will be an approximation)
-        start.y = startNode.centre.y;
-        destination.y = endNode.centre.y;
+    // like findNode, but the node is straight under the point
+    // findNode projects along the normal of a node, on a steep slope the point can be over a neighbour instead
+    public NavNode findNodeUnder( Vector3 point ) {
+        NavNode node = findNode(point, Settings.navHeight);
+        if(node == null)
+            return null;
+        int id = node.id;
+        for(int link = data.linkStart[node.id]; link < data.linkStart[node.id+1] && !data.isPointOverTriangle(id, point.x, point.z); link++)
+            id = data.linkNode[link];
+        return data.isPointOverTriangle(id, point.x, point.z) ? navNodes.get(id) : null;
+    }
+
+    // returns true if path was rebuilt
+    public boolean  makePath( Vector3 startPoint, Vector3 targetPoint, Array<NavNode> navNodePath, Array<Vector3> pointPath ) {
+        NavNode startNode = findNodeOnMesh(startPoint, start);          // use a reachable start, in case the nav actor is outside the nav mesh
+        NavNode endNode = findNodeOnMesh(targetPoint, destination);     // use a reachable destination, in case the target is outside the nav mesh
 
         // if the target has moved (more than a margin), we need to recalculate
         // we assume the start node is following the node path, so we only check the end of the path versus the target
         if(navNodePath.size == 0 || pointPath.size == 0 || !destination.epsilonEquals(pointPath.get(pointPath.size-1), TARGET_MARGIN)) {
-            findNodePath(startNode, endNode, navNodePath);
-            NavStringPuller.makePath(start, destination, navNodePath, pointPath);
+            if(query == null)
+                query = new NavQuery(this);
+            query.makePath(startNode, start, endNode, destination, navNodePath, pointPath);
             return true;
         }
         return false;
@@ -3,9 +3,14 @@ package com.monstrous.tut3d.nav;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Mesh;
-import com.badlogic.gdx.graphics.VertexAttributes;
 import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.monstrous.tut3d.MeshExtractor;
 
 public class NavMeshBuilder {
 
@@ -18,36 +23,40 @@ public class NavMeshBuilder {
         if(primitiveType != GL20.GL_TRIANGLES)
             throw new RuntimeException("Nav mesh must be GL_TRIANGLES");
 
-        int numVertices = mesh.getNumVertices();
-        int numIndices = mesh.getNumIndices();
-        int stride = mesh.getVertexSize()/4;        // floats per vertex in mesh, e.g. for position, normal, textureCoordinate, etc.
-
-        float[] vertices = new float[numVertices*stride];
-        short[] indices = new short[numIndices];
-        // find offset of position floats per vertex, they are not necessarily the first 3 floats
-        int posOffset = mesh.getVertexAttributes().findByUsage(VertexAttributes.Usage.Position).offset / 4;
+        float[] positions = MeshExtractor.getPositions(mesh);
+        int[] triangleIndices = MeshExtractor.getIndices(mesh);
+        return build(positions, triangleIndices);
+    }
 
-        mesh.getVertices(vertices);
-        mesh.getIndices(indices);
+    // create a navigation mesh from a list of triangles
+    // positions has x, y, z per vertex and indices has three vertex indices per triangle
+    //
+    public static NavMesh build(float[] positions, int[] indices) {
+        int numIndices = indices.length;
 
         NavMesh navMesh = new NavMesh();
         Vector3 corners[] = new Vector3[3];
         for(int i = 0; i < 3; i++)
             corners[i] = new Vector3();
 
+        // weld vertices: multiple vertices can be equivalent, i.e. have same position, so give each distinct position
+        // a canonical vertex id. This way triangles can be matched on vertex ids rather than on positions.
+        VertexWelder welder = new VertexWelder(numIndices);
+        IntArray triangleVertices = new IntArray(numIndices);     // 3 welded vertex ids per nav node
+        int[] welded = new int[3];
+
         int id = 0;
         for(int i = 0; i < numIndices; i+=3) {
             for(int j = 0; j < 3; j++) {
                 int index = indices[i+j];
-                float x = vertices[stride * index + posOffset];
-                float y = vertices[stride * index + 1 + posOffset];
-                float z = vertices[stride * index + 2 + posOffset];
+                float x = positions[3 * index];
+                float y = positions[3 * index + 1];
+                float z = positions[3 * index + 2];
                 corners[j].set(x, y, z);
+                welded[j] = welder.weld(x, y, z);
             }
             // skip degenerate triangles (i.e. where two corners are the same)
-            if(corners[0].epsilonEquals(corners[1]) ||
-               corners[1].epsilonEquals(corners[2]) ||
-               corners[2].epsilonEquals(corners[0])) {
+            if(welded[0] == welded[1] || welded[1] == welded[2] || welded[2] == welded[0]) {
                 // if this is not really a triangle because 2 verts are identical, or very close
                 // mark it as degenerate and always fail isPointInTriangle() because the calculations won't work
                 Gdx.app.log("degenerate triangle: "+i/3, "will be ignored");
@@ -55,42 +64,17 @@ public class NavMeshBuilder {
             else {
                 NavNode node = new NavNode(id++, corners[0], corners[1], corners[2]);
                 navMesh.navNodes.add(node);
+                triangleVertices.addAll(welded);
             }
         }
         Gdx.app.log("Nav Nodes:", ""+navMesh.navNodes.size);
 
-        // now determine connectivity between triangles, i.e. which triangles share two vertices?
-        int links = 0;
-        for(int i = 0; i < navMesh.navNodes.size; i++) {
-            // note: multiple vertices can be equivalent, i.e. have same position, so check on position equivalence
-            // not just if triangles use the same indices.
-            // (Alternative would be to deduplicate such vertices before to share the same index)
-            Vector3 p0 = navMesh.navNodes.get(i).p0;
-            Vector3 p1 = navMesh.navNodes.get(i).p1;
-            Vector3 p2 = navMesh.navNodes.get(i).p2;
-            for(int j = 0; j < i; j++) {
-                Vector3 q0 = navMesh.navNodes.get(j).p0;
-                Vector3 q1 = navMesh.navNodes.get(j).p1;
-                Vector3 q2 = navMesh.navNodes.get(j).p2;
-                int matches = 0;
-                if(p0.epsilonEquals(q0) || p0.epsilonEquals(q1) || p0.epsilonEquals(q2))
-                    matches++;
-                if(p1.epsilonEquals(q0) || p1.epsilonEquals(q1) || p1.epsilonEquals(q2))
-                    matches++;
-                if(p2.epsilonEquals(q0) || p2.epsilonEquals(q1) || p2.epsilonEquals(q2))
-                    matches++;
-                if(matches == 3)
-                    throw new RuntimeException("Duplicate triangles");
-                if(matches == 2){
-                    navMesh.navNodes.get(i).addNeighbour(navMesh.navNodes.get(j));
-                    navMesh.navNodes.get(j).addNeighbour(navMesh.navNodes.get(i));
-                    //Gdx.app.log("connection", ""+i+" & "+j);
-                    links++;
-                }
-            }
-        }
+        // now determine connectivity between triangles, i.e. which triangles share an edge?
+        int links = linkNeighbours(navMesh.navNodes, triangleVertices.items);
         Gdx.app.log("Nav Connections:", ""+links);
 
+        navMesh.buildData();
+
 //        StringBuilder sb = new StringBuilder();
 //        for(int i = 0; i < navMesh.navNodes.size; i++) {
 //            NavNode node = navMesh.navNodes.get(i);
@@ -112,4 +96,102 @@ public class NavMeshBuilder {
         return navMesh;
     }
 
+    // link triangles that share an edge, i.e. two welded vertices, in one pass over all edges.
+    // edges are looked up in a hash map keyed on the (lowest, highest) vertex id of the edge.
+    // returns the number of links
+    private static int linkNeighbours( Array<NavNode> navNodes, int[] triangleVertices ) {
+        int numEdges = 3 * navNodes.size;
+        IntIntMap edgeHead = new IntIntMap(numEdges);     // hash of edge key -> first half edge with this hash
+        int[] edgeNext = new int[numEdges];               // next half edge with the same hash, -1 at the end of the chain
+        int links = 0;
+        for(int edge = 0; edge < numEdges; edge++) {
+            int node = edge / 3;
+            int corner = edge % 3;
+            int a = triangleVertices[edge];
+            int b = triangleVertices[3*node + (corner+1)%3];
+            int key = edgeHash(Math.min(a,b), Math.max(a,b));
+
+            int first = edgeHead.get(key, -1);
+            for(int other = first; other >= 0; other = edgeNext[other]) {
+                int otherNode = other / 3;
+                int c = triangleVertices[other];
+                int d = triangleVertices[3*otherNode + (other%3+1)%3];
+                if(Math.min(a,b) != Math.min(c,d) || Math.max(a,b) != Math.max(c,d))   // hash collision
+                    continue;
+                if(sameTriangle(triangleVertices, node, otherNode))
+                    throw new RuntimeException("Duplicate triangles");
+                navNodes.get(node).addNeighbour(navNodes.get(otherNode), corner);
+                navNodes.get(otherNode).addNeighbour(navNodes.get(node), other % 3);
+                links++;
+            }
+            edgeNext[edge] = first;
+            edgeHead.put(key, edge);
+        }
+        return links;
+    }
+
+    private static int edgeHash( int minVertex, int maxVertex ) {
+        return minVertex * 31 + maxVertex * 0x9E3779B1;
+    }
+
+    private static boolean sameTriangle( int[] triangleVertices, int t1, int t2 ) {
+        for(int i = 0; i < 3; i++) {
+            int v = triangleVertices[3*t1+i];
+            if(v != triangleVertices[3*t2] && v != triangleVertices[3*t2+1] && v != triangleVertices[3*t2+2])
+                return false;
+        }
+        return true;
+    }
+
+    // gives each distinct vertex position a canonical id.
+    // positions are quantized to cells of twice the tolerance in a hash map, so that a match can only be found in
+    // at most 2 cells per axis. Positions match if they are equal within the tolerance, like Vector3.epsilonEquals()
+    private static class VertexWelder {
+        private static final float EPSILON = MathUtils.FLOAT_ROUNDING_ERROR;
+        private static final float CELL_SIZE = 2 * EPSILON;
+
+        private final FloatArray positions;         // x, y, z per vertex id
+        private final IntArray next;                // next vertex id in the same hash bucket, -1 at the end of the chain
+        private final IntIntMap bucketHead;         // hash of quantized position -> first vertex id
+
+        public VertexWelder( int capacity ) {
+            positions = new FloatArray(3*capacity);
+            next = new IntArray(capacity);
+            bucketHead = new IntIntMap(capacity);
+        }
+
+        public int weld( float x, float y, float z ) {
+            long x0 = cell(x - EPSILON), x1 = cell(x + EPSILON);
+            long y0 = cell(y - EPSILON), y1 = cell(y + EPSILON);
+            long z0 = cell(z - EPSILON), z1 = cell(z + EPSILON);
+            for(long cx = x0; cx <= x1; cx++) {
+                for(long cy = y0; cy <= y1; cy++) {
+                    for(long cz = z0; cz <= z1; cz++) {
+                        for(int v = bucketHead.get(hash(cx, cy, cz), -1); v >= 0; v = next.get(v)) {
+                            if(Math.abs(positions.get(3*v) - x) <= EPSILON &&
+                               Math.abs(positions.get(3*v+1) - y) <= EPSILON &&
+                               Math.abs(positions.get(3*v+2) - z) <= EPSILON)
+                                return v;
+                        }
+                    }
+                }
+            }
+            // new position
+            int v = next.size;
+            int key = hash(cell(x), cell(y), cell(z));
+            positions.add(x, y, z);
+            next.add(bucketHead.get(key, -1));
+            bucketHead.put(key, v);
+            return v;
+        }
+
+        private static long cell( float f ) {
+            return (long)Math.floor(f / CELL_SIZE);
+        }
+
+        private static int hash( long cx, long cy, long cz ) {
+            long h = cx * 73856093L ^ cy * 19349663L ^ cz * 83492791L;
+            return (int)(h ^ (h >>> 32));
+        }
+    }
 }
@@ -0,0 +1,186 @@
+package com.monstrous.tut3d.nav;
+
+import com.badlogic.gdx.utils.Array;
+
+
+// compact read-only copy of the nav mesh for queries
+// all node data is kept in flat arrays indexed by node id (struct of arrays), the links between nodes are stored
+// as one list with an offset per node (like a compressed sparse row matrix).
+// The data is not modified after construction, so any number of queries (see NavQuery) can use it at the same time.
+
+public class NavMeshData {
+    public final int numNodes;
+    public final float[] corners;           // x,y,z of p0, p1, p2 per node
+    public final float[] normals;           // x,y,z per node
+    public final float[] d;                 // plane equation value per node
+    public final float[] centres;           // x,y,z per node
+    public final int[] linkStart;           // offset into the link arrays per node, one extra entry at the end
+    public final int[] linkNode;            // neighbour node id per link
+    public final byte[] linkEdge;           // shared edge per link, see NavNode.neighbourEdges
+    public final float[] linkCost;          // distance between the centres of the node and the neighbour
+
+    public NavMeshData( Array<NavNode> navNodes ) {
+        numNodes = navNodes.size;
+        corners = new float[9*numNodes];
+        normals = new float[3*numNodes];
+        d = new float[numNodes];
+        centres = new float[3*numNodes];
+        linkStart = new int[numNodes+1];
+
+        int numLinks = 0;
+        for(int id = 0; id < numNodes; id++) {
+            NavNode node = navNodes.get(id);
+            if(node.id != id)
+                throw new RuntimeException("Nav node id does not match its index: " + node.id);
+            for(int k = 0; k < 3; k++) {
+                corners[9*id + 3*k] = node.getCorner(k).x;
+                corners[9*id + 3*k + 1] = node.getCorner(k).y;
+                corners[9*id + 3*k + 2] = node.getCorner(k).z;
+            }
+            normals[3*id] = node.normal.x;
+            normals[3*id+1] = node.normal.y;
+            normals[3*id+2] = node.normal.z;
+            d[id] = node.d;
+            centres[3*id] = node.centre.x;
+            centres[3*id+1] = node.centre.y;
+            centres[3*id+2] = node.centre.z;
+            linkStart[id] = numLinks;
+            numLinks += node.neighbours.size;
+        }
+        linkStart[numNodes] = numLinks;
+
+        linkNode = new int[numLinks];
+        linkEdge = new byte[numLinks];
+        linkCost = new float[numLinks];
+        for(int id = 0; id < numNodes; id++) {
+            NavNode node = navNodes.get(id);
+            for(int i = 0; i < node.neighbours.size; i++) {
+                int link = linkStart[id] + i;
+                int nbor = node.neighbours.get(i).id;
+                linkNode[link] = nbor;
+                linkEdge[link] = (byte)node.neighbourEdges.get(i);
+                linkCost[link] = centreDistance(id, nbor);
+            }
+        }
+    }
+
+    public float centreDistance( int a, int b ) {
+        float dx = centres[3*a] - centres[3*b];
+        float dy = centres[3*a+1] - centres[3*b+1];
+        float dz = centres[3*a+2] - centres[3*b+2];
+        return (float)Math.sqrt(dx*dx + dy*dy + dz*dz);
+    }
+
+    public float centreDistance2( int id, float x, float y, float z ) {
+        float dx = centres[3*id] - x;
+        float dy = centres[3*id+1] - y;
+        float dz = centres[3*id+2] - z;
+        return dx*dx + dy*dy + dz*dz;
+    }
+
+    // same test as NavNode.isPointInTriangle, but without temporary vectors so that it can be called from any thread:
+    // the point must be above the plane of the triangle, by at most maxDist, and its projection on the plane must be inside the triangle
+    public boolean isPointInTriangle( int id, float x, float y, float z, float maxDist ) {
+        float nx = normals[3*id];
+        float ny = normals[3*id+1];
+        float nz = normals[3*id+2];
+        float distanceToPlane = x*nx + y*ny + z*nz + d[id];
+        if(distanceToPlane < 0 || distanceToPlane > maxDist)
+            return false;
+        float px = nx * -distanceToPlane + x;       // project point onto plane of the triangle
+        float py = ny * -distanceToPlane + y;
+        float pz = nz * -distanceToPlane + z;
+
+        // vectors from the point to the corners, the point is inside if the cross products all point the same way
+        int c = 9*id;
+        float ax = corners[c] - px, ay = corners[c+1] - py, az = corners[c+2] - pz;
+        float bx = corners[c+3] - px, by = corners[c+4] - py, bz = corners[c+5] - pz;
+        float cx = corners[c+6] - px, cy = corners[c+7] - py, cz = corners[c+8] - pz;
+        float ux = by*cz - bz*cy, uy = bz*cx - bx*cz, uz = bx*cy - by*cx;          // b x c
+        float wx = cy*az - cz*ay, wy = cz*ax - cx*az, wz = cx*ay - cy*ax;          // c x a
+        if(ux*wx + uy*wy + uz*wz < 0f)
+            return false;
+        float vx = ay*bz - az*by, vy = az*bx - ax*bz, vz = ax*by - ay*bx;          // a x b
+        return ux*vx + uy*vy + uz*vz >= 0f;
+    }
+
+    // is the point above or below the triangle, i.e. inside it in the horizontal plane (x,z)?
+    public boolean isPointOverTriangle( int id, float x, float z ) {
+        int c = 9*id;
+        float d0 = (x - corners[c+3]) * (corners[c+2] - corners[c+5]) - (corners[c] - corners[c+3]) * (z - corners[c+5]);
+        float d1 = (x - corners[c+6]) * (corners[c+5] - corners[c+8]) - (corners[c+3] - corners[c+6]) * (z - corners[c+8]);
+        float d2 = (x - corners[c]) * (corners[c+8] - corners[c+2]) - (corners[c+6] - corners[c]) * (z - corners[c+2]);
+        boolean negative = d0 < 0 || d1 < 0 || d2 < 0;
+        boolean positive = d0 > 0 || d1 > 0 || d2 > 0;
+        return !(negative && positive);
+    }
+
+    // walk the straight line from a point in the start node to an end point, from triangle to triangle over the shared edges
+    // the line is followed in the horizontal plane (x,z), it must not cross a border of the mesh or a blocked node.
+    // If sameSlope is set, the line must also not cross a slope change (same test as the string puller).
+    // Returns the node that contains the end point, at most maxDist below it (like findNode), or -1 if the line leaves the mesh.
+    public int raycast( int startNode, float sx, float sz, float ex, float ey, float ez, float maxDist, NavTiles.State obstacles, boolean sameSlope ) {
+        int id = walk(startNode, sx, sz, ex, ez, obstacles, sameSlope);
+        if(id < 0)
+            return -1;
+        float height = getHeight(id, ex, ez);
+        return ey >= height && ey <= height + maxDist ? id : -1;
+    }
+
+    // height of the plane of a node at the given x,z
+    public float getHeight( int id, float x, float z ) {
+        return -(normals[3*id]*x + normals[3*id+2]*z + d[id]) / normals[3*id+1];
+    }
+
+    // the walk of raycast() without the height test: returns the node over the end point (x,z) or -1 if the line leaves the mesh
+    // obstacles can be null to ignore blocked nodes
+    public int walk( int startNode, float sx, float sz, float ex, float ez, NavTiles.State obstacles, boolean sameSlope ) {
+        float dx = ex - sx;
+        float dz = ez - sz;
+        int id = startNode;
+        int prev = -1;
+        for(int steps = 0; steps < numNodes; steps++) {
+            // find the edge where the line leaves the triangle (Cyrus-Beck clipping against the edges)
+            int c = 9*id;
+            float area = (corners[c+3] - corners[c]) * (corners[c+8] - corners[c+2]) - (corners[c+5] - corners[c+2]) * (corners[c+6] - corners[c]);
+            float sign = area >= 0 ? 1 : -1;           // to get outward edge normals for either winding
+            int exitEdge = -1;
+            float exitT = 1f;
+            float enterT = 0f;
+            for(int edge = 0; edge < 3; edge++) {
+                int a = c + 3*edge;
+                int b = c + 3*((edge+1)%3);
+                float nx = sign * (corners[b+2] - corners[a+2]);
+                float nz = -sign * (corners[b] - corners[a]);
+                float towards = nx*dx + nz*dz;
+                float t = (nx*(corners[a] - sx) + nz*(corners[a+2] - sz)) / towards;
+                if(towards < 0)                         // entering through this edge
+                    enterT = Math.max(enterT, t);
+                else if(towards > 0 && t < exitT) {     // leaving through this edge
+                    exitT = t;
+                    exitEdge = edge;
+                }
+            }
+            if(steps == 0 && (enterT > 0.0001f || exitT < -0.0001f))    // the start point is not in the start node (e.g. a steep one)
+                return -1;
+            if(exitEdge < 0)                            // the end point is in this triangle
+                return id;
+
+            // cross to the neighbour on the exit edge
+            int next = -1;
+            for(int link = linkStart[id]; link < linkStart[id+1]; link++) {
+                if(linkEdge[link] == exitEdge) {
+                    next = linkNode[link];
+                    break;
+                }
+            }
+            if(next < 0 || next == prev || (obstacles != null && obstacles.isBlocked(next)))
+                return -1;
+            if(sameSlope && normals[3*id]*normals[3*next] + normals[3*id+1]*normals[3*next+1] + normals[3*id+2]*normals[3*next+2] < 0.99f)
+                return -1;
+            prev = id;
+            id = next;
+        }
+        return -1;
+    }
+}
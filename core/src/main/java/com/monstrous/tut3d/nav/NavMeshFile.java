@@ -0,0 +1,149 @@
+package com.monstrous.tut3d.nav;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+// binary nav mesh file, so that a level does not need to build its nav mesh at start up.
+// The file is cooked offline (see the tools module) and is little-endian:
+//
+//  int     magic ("NAVM"), version, source hash, number of nodes N, number of links L
+//  float   corners[9*N]        x,y,z of p0, p1, p2 per node
+//  float   normals[3*N]
+//  float   d[N]                plane equation value per node
+//  int     linkStart[N+1]      offset into the link tables per node
+//  int     linkNode[L]         neighbour node id per link
+//  byte    linkEdge[L]         shared edge per link, see NavNode.neighbourEdges
+//
+// The source hash identifies the glTF file the nav mesh was cooked from (see GltfMeshReader.getSourceHash()), so that
+// the cooker can tell whether the file is up to date. The game does not check it, it loads the file as it is.
+
+public class NavMeshFile {
+    private static final int MAGIC = 0x4D56414E;        // "NAVM" in little-endian
+    public static final int VERSION = 2;
+    private static final int HEADER_SIZE = 5*4;
+
+    public static final String GENERATED = "generated";     // name instead of a node name for the nav mesh generated from the level geometry
+
+    // cooked file for a nav mesh node of a glTF file, e.g. models/step21-NAVMESH.nav
+    public static String getFileName( String gltfFile, String nodeName ) {
+        int dot = gltfFile.lastIndexOf('.');
+        return (dot < 0 ? gltfFile : gltfFile.substring(0, dot)) + "-" + nodeName + ".nav";
+    }
+
+    public static void write( NavMesh navMesh, int sourceHash, FileHandle file ) {
+        int numNodes = navMesh.navNodes.size;
+        int numLinks = 0;
+        for(NavNode node : navMesh.navNodes)
+            numLinks += node.neighbours.size;
+
+        int size = HEADER_SIZE + 4*(9+3+1)*numNodes + 4*(numNodes+1) + 4*numLinks + numLinks;
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(sourceHash);
+        buffer.putInt(numNodes);
+        buffer.putInt(numLinks);
+        for(NavNode node : navMesh.navNodes) {
+            putVector(buffer, node.p0);
+            putVector(buffer, node.p1);
+            putVector(buffer, node.p2);
+        }
+        for(NavNode node : navMesh.navNodes)
+            putVector(buffer, node.normal);
+        for(NavNode node : navMesh.navNodes)
+            buffer.putFloat(node.d);
+        int offset = 0;
+        for(NavNode node : navMesh.navNodes) {
+            buffer.putInt(offset);
+            offset += node.neighbours.size;
+        }
+        buffer.putInt(offset);
+        for(NavNode node : navMesh.navNodes)
+            for(NavNode nbor : node.neighbours)
+                buffer.putInt(nbor.id);
+        for(NavNode node : navMesh.navNodes)
+            for(int i = 0; i < node.neighbourEdges.size; i++)
+                buffer.put((byte)node.neighbourEdges.get(i));
+
+        file.writeBytes(buffer.array(), false);
+    }
+
+    private static void putVector( ByteBuffer buffer, Vector3 v ) {
+        buffer.putFloat(v.x);
+        buffer.putFloat(v.y);
+        buffer.putFloat(v.z);
+    }
+
+    // source hash of an existing file of the current version, or null if there is no such file
+    public static Integer readSourceHash( FileHandle file ) {
+        if(!file.exists() || file.length() < HEADER_SIZE)
+            return null;
+        ByteBuffer header = ByteBuffer.wrap(file.readBytes(), 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if(header.getInt() != MAGIC || header.getInt() != VERSION)
+            return null;
+        return header.getInt();
+    }
+
+    // read a nav mesh file, the file is memory mapped where the platform allows it.
+    public static NavMesh read( FileHandle file ) {
+        ByteBuffer buffer;
+        try {
+            buffer = file.map();        // maps the file via a FileChannel, no copy into the heap
+        } catch (RuntimeException e) {
+            buffer = ByteBuffer.wrap(file.readBytes());     // e.g. classpath file or web platform
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if(buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+            throw new GdxRuntimeException("Not a nav mesh file: " + file.path());
+        int version = buffer.getInt();
+        if(version != VERSION)
+            throw new GdxRuntimeException("Nav mesh file version " + version + " not supported: " + file.path());
+        buffer.getInt();                        // source hash, only used by the cooker
+        int numNodes = buffer.getInt();
+        int numLinks = buffer.getInt();
+        if(buffer.remaining() != 4*(9+3+1)*numNodes + 4*(numNodes+1) + 5*numLinks)
+            throw new GdxRuntimeException("Nav mesh file has wrong size: " + file.path());
+
+        int cornerBase = buffer.position();
+        int normalBase = cornerBase + 4*9*numNodes;
+        int planeBase = normalBase + 4*3*numNodes;
+        int linkStartBase = planeBase + 4*numNodes;
+        int linkNodeBase = linkStartBase + 4*(numNodes+1);
+        int linkEdgeBase = linkNodeBase + 4*numLinks;
+
+        NavMesh navMesh = new NavMesh();
+        Vector3 a = new Vector3();
+        Vector3 b = new Vector3();
+        Vector3 c = new Vector3();
+        Vector3 normal = new Vector3();
+        for(int id = 0; id < numNodes; id++) {
+            getVector(buffer, cornerBase + 36*id, a);
+            getVector(buffer, cornerBase + 36*id + 12, b);
+            getVector(buffer, cornerBase + 36*id + 24, c);
+            getVector(buffer, normalBase + 12*id, normal);
+            float d = buffer.getFloat(planeBase + 4*id);
+            navMesh.navNodes.add(new NavNode(id, a, b, c, normal, d));
+        }
+        for(int id = 0; id < numNodes; id++) {
+            NavNode node = navMesh.navNodes.get(id);
+            int start = buffer.getInt(linkStartBase + 4*id);
+            int end = buffer.getInt(linkStartBase + 4*id + 4);
+            for(int link = start; link < end; link++)
+                node.addNeighbour(navMesh.navNodes.get(buffer.getInt(linkNodeBase + 4*link)), buffer.get(linkEdgeBase + link));
+        }
+        navMesh.buildData();
+        Gdx.app.log("Nav mesh loaded:", file.path()+" nodes: "+numNodes);
+        return navMesh;
+    }
+
+    private static void getVector( ByteBuffer buffer, int offset, Vector3 v ) {
+        v.set(buffer.getFloat(offset), buffer.getFloat(offset+4), buffer.getFloat(offset+8));
+    }
+}
@@ -46,6 +46,7 @@ public class NavMeshView implements Disposable {
         instances.clear();
 
         buildNavNodes(world.navMesh.navNodes);
+        buildBlockedNodes(world.navMesh);
 
         //buildPortals(NavStringPuller.portals);
 
@@ -90,6 +91,32 @@ public class NavMeshView implements Disposable {
 
 
 
+    // nodes blocked by dynamic obstacles
+    public void buildBlockedNodes( NavMesh navMesh ) {
+        NavTiles.State obstacles = navMesh.getObstacleState();
+        if(obstacles.blocked == null)
+            return;
+
+        modelBuilder = new ModelBuilder();
+        modelBuilder.begin();
+        Material material = new Material(ColorAttribute.createDiffuse(Color.ORANGE));
+        MeshPartBuilder meshBuilder = modelBuilder.part("part", GL20.GL_TRIANGLES, VertexAttributes.Usage.Position, material);
+        for(NavNode navNode : navMesh.navNodes) {
+            if(!obstacles.isBlocked(navNode.id))
+                continue;
+            meshBuilder.ensureVertices(3);
+            short v0 = meshBuilder.vertex(navNode.p0.x, navNode.p0.y, navNode.p0.z);
+            short v1 = meshBuilder.vertex(navNode.p1.x, navNode.p1.y, navNode.p1.z);
+            short v2 = meshBuilder.vertex(navNode.p2.x, navNode.p2.y, navNode.p2.z);
+            meshBuilder.ensureTriangleIndices(1);
+            meshBuilder.triangle(v0, v1, v2);
+        }
+        Model model = modelBuilder.end();
+        ModelInstance instance = new ModelInstance(model, Vector3.Zero);
+        models.add(model);
+        instances.add(instance);
+    }
+
     public void buildNavNodePath(Array<NavNode> path ) {
         if (path == null || path.size == 0) {
             return;
@@ -99,9 +126,10 @@ public class NavMeshView implements Disposable {
         modelBuilder.begin();
         MeshPartBuilder meshBuilder;
 
-        for(NavNode navNode : path ) {
+        for(int i = 0; i < path.size; i++ ) {
+            NavNode navNode = path.get(i);
 
-            Material material = new Material(ColorAttribute.createDiffuse((float)(16-navNode.steps)/16f, 0, .5f, 1));   // colour shade depends on distance to target
+            Material material = new Material(ColorAttribute.createDiffuse((float)(16-i)/16f, 0, .5f, 1));   // colour shade depends on steps along the path
             meshBuilder = modelBuilder.part("part", GL20.GL_TRIANGLES, VertexAttributes.Usage.Position, material);
 
 
@@ -144,8 +172,9 @@ public class NavMeshView implements Disposable {
         instances.add(instance);
     }
 
-    public void buildPortals( Array<NavStringPuller.Portal> portals ) {
-        if (portals.size == 0) {
+    // show the portals of the last path made by a string puller
+    public void buildPortals( NavStringPuller stringPuller ) {
+        if (stringPuller.getNumPortals() == 0) {
             return;
         }
 
@@ -155,10 +184,10 @@ public class NavMeshView implements Disposable {
 
         Material material = new Material(ColorAttribute.createDiffuse(Color.YELLOW));
         meshBuilder = modelBuilder.part("line", GL20.GL_LINES, VertexAttributes.Usage.Position, material);
-        for(NavStringPuller.Portal portal : portals ) {
-
-            Vector3 v0 = portal.left;
-            Vector3 v1 = portal.right;
+        Vector3 v0 = new Vector3();
+        Vector3 v1 = new Vector3();
+        for(int i = 0; i < stringPuller.getNumPortals(); i++) {
+            stringPuller.getPortal(i, v0, v1);
             short i0 = meshBuilder.vertex(v0.x, v0.y+0.1f, v0.z);      // raise a bit above ground
             short i1 = meshBuilder.vertex(v1.x, v1.y+0.1f, v1.z);
             meshBuilder.line(i0, i1);
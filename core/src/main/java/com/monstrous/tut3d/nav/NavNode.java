@@ -7,17 +7,17 @@ package com.monstrous.tut3d.nav;
 import com.badlogic.gdx.math.Intersector;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
 
 public class NavNode {
     public final int id;                    // for debugging
     public final Vector3 p0, p1, p2;        // the corners
     public Array<NavNode> neighbours;       // connection to other nodes
+    public IntArray neighbourEdges;         // per neighbour, the edge shared with it: 0 = p0-p1, 1 = p1-p2, 2 = p2-p0
     public Vector3 normal;                  // normal vector
-    private float d;                        // for plane equation
+    public final float d;                   // for plane equation
     public final Vector3 centre;            // centre point
     private Vector3 p = new Vector3();      // tmp var
-    public int steps;                       // for use in search algo
-    public NavNode prev;                    // for use in search algo
 
 
     public NavNode( int id, Vector3 a, Vector3 b, Vector3 c) {
@@ -26,6 +26,7 @@ public class NavNode {
         p1 = new Vector3(b);
         p2 = new Vector3(c);
         neighbours = new Array<>(3);
+        neighbourEdges = new IntArray(3);
 
         centre = new Vector3(a).add(b).add(c).scl(1/3f);
 
@@ -40,8 +41,41 @@ public class NavNode {
         d = -(normal.x*a.x + normal.y*a.y + normal.z*a.z);
     }
 
-    public void addNeighbour( NavNode nbor  ){
+    // create a node with a precalculated plane, e.g. when loaded from a nav mesh file
+    public NavNode( int id, Vector3 a, Vector3 b, Vector3 c, Vector3 normal, float d) {
+        this.id = id;
+        p0 = new Vector3(a);
+        p1 = new Vector3(b);
+        p2 = new Vector3(c);
+        neighbours = new Array<>(3);
+        neighbourEdges = new IntArray(3);
+        centre = new Vector3(a).add(b).add(c).scl(1/3f);
+        this.normal = new Vector3(normal);
+        this.d = d;
+    }
+
+    // edge is the index of the edge of this triangle that is shared with the neighbour
+    public void addNeighbour( NavNode nbor, int edge ){
         neighbours.add(nbor);
+        neighbourEdges.add(edge);
+    }
+
+    public Vector3 getCorner( int index ) {
+        switch(index) {
+            case 0: return p0;
+            case 1: return p1;
+            default: return p2;
+        }
+    }
+
+    // get the edge shared with a neighbouring node, in the winding order of this triangle
+    public void getEdge( NavNode nbor, Vector3 start, Vector3 end ) {
+        int index = neighbours.indexOf(nbor, true);
+        if(index < 0)
+            throw new RuntimeException("Cannot match edges");
+        int edge = neighbourEdges.get(index);
+        start.set(getCorner(edge));
+        end.set(getCorner((edge+1)%3));
     }
 
     // https://stackoverflow.com/questions/2049582/how-to-determine-if-a-point-is-in-a-2d-triangle
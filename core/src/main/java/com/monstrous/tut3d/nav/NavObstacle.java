@@ -0,0 +1,28 @@
+package com.monstrous.tut3d.nav;
+
+import com.badlogic.gdx.math.collision.BoundingBox;
+
+
+// footprint of a dynamic obstacle on the nav mesh, e.g. a physics body that came to rest
+// the owner updates the footprint every frame, NavTiles.update() applies the changes.
+// An inactive obstacle (e.g. while it is rolling) does not block anything.
+
+public class NavObstacle {
+    final BoundingBox bounds = new BoundingBox();       // requested footprint
+    boolean active;
+    final BoundingBox applied = new BoundingBox();      // footprint the blocked nodes are based on
+    boolean appliedActive;
+
+    public void set( BoundingBox box ) {
+        bounds.set(box);
+        active = true;
+    }
+
+    public void clear() {
+        active = false;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+}
@@ -0,0 +1,149 @@
+package com.monstrous.tut3d.nav;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongMap;
+
+
+// bounded cache of node paths with their portals, keyed by start and end node id
+// when the cache is full the least recently used entry is replaced, its arrays are reused so that a full cache does not allocate.
+// The cache belongs to a nav mesh and is shared by all its queries, so the methods are synchronized.
+// It must be cleared when the nav mesh changes, since the node ids are only valid for one version of the nav mesh.
+// Entries are stamped with the obstacle state they were searched with (see NavTiles). An entry is not used when it
+// crosses a tile that changed since, or when any node was unblocked since (a shorter path may have opened up).
+
+public class NavPathCache {
+    public static int CAPACITY = 256;           // default number of entries
+
+    private static class Entry {
+        long key;
+        int[] nodes = new int[16];
+        int numNodes;
+        int version;                // obstacle state version
+        float[] portals = new float[NavStringPuller.PORTAL_SIZE * 16];
+        boolean[] slopeChanges = new boolean[16];
+        int numPortals;
+        Entry newer, older;         // neighbours in the list from most to least recently used
+    }
+
+    private final int capacity;
+    private final LongMap<Entry> entries;
+    private Entry newest, oldest;
+    private int hits;
+    private int misses;
+
+    public NavPathCache() {
+        this(CAPACITY);
+    }
+
+    // capacity 0 disables the cache
+    public NavPathCache( int capacity ) {
+        this.capacity = capacity;
+        entries = new LongMap<>(Math.max(capacity, 1));
+    }
+
+    private static long key( int startId, int endId ) {
+        return ((long)startId << 32) | (endId & 0xFFFFFFFFL);
+    }
+
+    // look up the path from start to end node, on a hit the node ids are copied into nodePath and the portals are set
+    // in the string puller
+    public synchronized boolean get( int startId, int endId, IntArray nodePath, NavStringPuller stringPuller, NavTiles.State obstacles ) {
+        Entry entry = entries.get(key(startId, endId));
+        if(entry == null || entry.version < obstacles.unblockVersion || !obstacles.isValid(entry.nodes, entry.numNodes, entry.version)) {
+            misses++;
+            return false;
+        }
+        hits++;
+        unlink(entry);
+        linkNewest(entry);
+        nodePath.clear();
+        nodePath.addAll(entry.nodes, 0, entry.numNodes);
+        stringPuller.setPortals(entry.portals, entry.slopeChanges, entry.numPortals);
+        return true;
+    }
+
+    // store a node path with the portals that the string puller made for it (see NavStringPuller.setPortals)
+    // version is the obstacle state version the path was searched with
+    public synchronized void put( int startId, int endId, Array<NavNode> nodePath, NavStringPuller stringPuller, int version ) {
+        if(capacity == 0)
+            return;
+        long key = key(startId, endId);
+        Entry entry = entries.get(key);
+        if(entry != null)
+            unlink(entry);
+        else if(entries.size >= capacity) {
+            entry = oldest;                 // reuse the least recently used entry
+            unlink(entry);
+            entries.remove(entry.key);
+        }
+        else
+            entry = new Entry();
+        entry.key = key;
+        entry.version = version;
+
+        if(entry.nodes.length < nodePath.size)
+            entry.nodes = new int[Math.max(nodePath.size, 2 * entry.nodes.length)];
+        for(int i = 0; i < nodePath.size; i++)
+            entry.nodes[i] = nodePath.get(i).id;
+        entry.numNodes = nodePath.size;
+
+        int numPortals = stringPuller.getNumInteriorPortals();
+        if(entry.slopeChanges.length < numPortals) {
+            int length = Math.max(numPortals, 2 * entry.slopeChanges.length);
+            entry.portals = new float[NavStringPuller.PORTAL_SIZE * length];
+            entry.slopeChanges = new boolean[length];
+        }
+        stringPuller.getPortals(entry.portals, entry.slopeChanges);
+        entry.numPortals = numPortals;
+
+        entries.put(key, entry);
+        linkNewest(entry);
+    }
+
+    // remove all entries, e.g. when the nav mesh was changed
+    public synchronized void clear() {
+        entries.clear();
+        newest = null;
+        oldest = null;
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size;
+    }
+
+    public synchronized void resetCounters() {
+        hits = 0;
+        misses = 0;
+    }
+
+    private void unlink( Entry entry ) {
+        if(entry.newer != null)
+            entry.newer.older = entry.older;
+        else
+            newest = entry.older;
+        if(entry.older != null)
+            entry.older.newer = entry.newer;
+        else
+            oldest = entry.newer;
+        entry.newer = null;
+        entry.older = null;
+    }
+
+    private void linkNewest( Entry entry ) {
+        entry.older = newest;
+        if(newest != null)
+            newest.newer = entry;
+        newest = entry;
+        if(oldest == null)
+            oldest = entry;
+    }
+}
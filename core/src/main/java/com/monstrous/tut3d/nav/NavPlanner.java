@@ -0,0 +1,179 @@
+package com.monstrous.tut3d.nav;
+
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+
+// incremental path planner for one nav actor that chases a moving target
+// the A* search tree from the root node (where the actor was) is kept between queries. Because the nav mesh does not
+// change and the heuristic is consistent, the cost of every closed node stays exact when the goal moves: a new goal only
+// needs the open list to be re-keyed for the new heuristic, after which the search continues where it stopped.
+// A goal that is already closed costs nothing but following the tree.
+// The actor itself moves along the path, so as long as its node lies on the shortest path from the root to the goal, the
+// rest of that path is also the shortest path from the actor. Otherwise the tree is restarted from the actor's node.
+// The tree is also restarted when the blocked nodes change (see NavTiles), a path is only made again if it crosses a
+// tile that changed.
+
+public class NavPlanner {
+
+    private final NavMesh navMesh;
+    private final NavMeshData data;
+    private final IndexedMinHeap open;
+    private final float[] cost;           // cost from root node (g)
+    private final int[] prev;             // previous node id on the best path found so far, -1 for the root node
+    private final int[] visited;          // generation in which cost and prev were set
+    private final int[] closed;           // generation in which the node was closed
+    private final IntArray closedNodes;   // in order of closing, to find the closest node to an unreachable goal
+    private int generation;
+    private int root = -1;                // node the current search tree grows from
+    private int goal = -1;                // node the open list is keyed for
+    private NavTiles.State obstacles;     // blocked nodes the tree was grown with
+    private int pathVersion = -1;         // obstacle state version of the last path
+    private final NavStringPuller stringPuller;
+    private final Vector3 start = new Vector3();
+    private final Vector3 destination = new Vector3();
+
+    public NavPlanner(NavMesh navMesh) {
+        this.navMesh = navMesh;
+        this.data = navMesh.getData();
+        int numNodes = data.numNodes;
+        open = new IndexedMinHeap(numNodes);
+        cost = new float[numNodes];
+        prev = new int[numNodes];
+        visited = new int[numNodes];
+        closed = new int[numNodes];
+        closedNodes = new IntArray(numNodes);
+        stringPuller = new NavStringPuller();
+    }
+
+    // same as NavMesh.makePath, returns true if path was rebuilt
+    public boolean makePath( Vector3 startPoint, Vector3 targetPoint, Array<NavNode> navNodePath, Array<Vector3> pointPath ) {
+        NavNode startNode = navMesh.findNodeOnMesh(startPoint, start);
+        NavNode endNode = navMesh.findNodeOnMesh(targetPoint, destination);
+
+        // if the target has moved (more than a margin) or an obstacle appeared on the path, we need to recalculate
+        NavTiles.State current = navMesh.getObstacleState();
+        if(navNodePath.size > 0 && pointPath.size > 0 && destination.epsilonEquals(pointPath.peek(), NavMesh.TARGET_MARGIN)
+            && current.isValid(navNodePath, pathVersion))
+            return false;
+        findPath(startNode, endNode, navNodePath);
+        pathVersion = obstacles.version;
+        stringPuller.makePath(start, destination, navNodePath, pointPath);
+        return true;
+    }
+
+    // find the shortest node path from start to end node, reusing the search of the previous call where possible
+    // if the end node cannot be reached, the path leads to the reachable node closest to the end node
+    // returns true if the end node was reached
+    public boolean findPath( NavNode startNode, NavNode endNode, Array<NavNode> nodePath ) {
+        int start = startNode.id;
+        int end = endNode.id;
+
+        if(obstacles != navMesh.getObstacleState())     // the blocked nodes have changed, the costs in the tree are no longer valid
+            restart(start);
+        else if(root != start && !isClosed(start))      // the actor left the search tree, it cannot be on a path from the root
+            restart(start);
+        int last = search(end);
+        if(root != start && !isOnPath(start, last)) {
+            restart(start);
+            last = search(end);
+        }
+
+        // follow the tree back from the last node to the start node
+        nodePath.clear();
+        for(int id = last; id != start; id = prev[id])
+            nodePath.add(navMesh.navNodes.get(id));
+        nodePath.add(startNode);
+        nodePath.reverse();
+        return last == end;
+    }
+
+    private boolean isClosed( int id ) {
+        return root >= 0 && closed[id] == generation;
+    }
+
+    private boolean isOnPath( int id, int last ) {
+        for(int n = last; n >= 0; n = prev[n]) {
+            if(n == id)
+                return true;
+        }
+        return false;
+    }
+
+    // throw away the search tree and start a new one from the root node
+    private void restart( int rootNode ) {
+        generation++;
+        if(generation == Integer.MAX_VALUE) {       // wrap around, the stamps have to be reset
+            for(int i = 0; i < visited.length; i++) {
+                visited[i] = 0;
+                closed[i] = 0;
+            }
+            generation = 1;
+        }
+        open.clear();
+        closedNodes.clear();
+        obstacles = navMesh.getObstacleState();
+        root = rootNode;
+        goal = -1;
+        cost[root] = 0;
+        prev[root] = -1;
+        visited[root] = generation;
+        open.add(root, 0);
+    }
+
+    // continue the A* search until the end node is closed, returns the end node or, if it cannot be reached,
+    // the closed node closest to it
+    private int search( int end ) {
+        if(closed[end] == generation)
+            return end;
+        if(end != goal) {           // the goal has moved: re-key the open list for the new heuristic
+            goal = end;
+            for(int i = 0; i < open.size(); i++) {
+                int id = open.get(i);
+                open.setKey(id, cost[id] + data.centreDistance(id, end));
+            }
+            open.heapify();
+        }
+
+        final int[] linkStart = data.linkStart;
+        final int[] linkNode = data.linkNode;
+        final float[] linkCost = data.linkCost;
+        final boolean[] blocked = obstacles.blocked;
+        while(!open.isEmpty()) {
+            int id = open.pop();
+            closed[id] = generation;
+            closedNodes.add(id);
+            // a blocked node is a leaf of the tree: it can be a goal, but paths do not pass through it
+            if(blocked == null || !blocked[id] || id == root) {
+                for(int link = linkStart[id]; link < linkStart[id+1]; link++) {
+                    int n = linkNode[link];
+                    if(closed[n] == generation)
+                        continue;
+                    float alt = cost[id] + linkCost[link];
+                    if(visited[n] != generation || alt < cost[n]) {
+                        visited[n] = generation;
+                        cost[n] = alt;
+                        prev[n] = id;
+                        open.add(n, alt + data.centreDistance(n, end));
+                    }
+                }
+            }
+            if(id == end)
+                return end;
+        }
+
+        // the end node is not reachable from the root
+        int best = root;
+        float bestDistance = Float.MAX_VALUE;
+        for(int i = 0; i < closedNodes.size; i++) {
+            int id = closedNodes.get(i);
+            float h = data.centreDistance(id, end);
+            if(h < bestDistance) {
+                bestDistance = h;
+                best = id;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,145 @@
+package com.monstrous.tut3d.nav;
+
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+
+// per-query search state for a nav mesh: A* search over the nodes
+// the cost of a step is the distance between the centres of two nodes and the heuristic is the straight line distance
+// to the centre of the end node.
+// all search state is kept in arrays indexed by node id, so a query does not allocate and does not touch the nodes.
+// the mesh itself is only read (see NavMeshData), so each thread can run its own NavQuery on the same mesh.
+// instead of clearing the arrays before each query, entries are stamped with a generation number.
+// on a large nav mesh with a cluster graph, queries between clusters are done hierarchically (see NavClusterQuery).
+// results are kept in the path cache of the nav mesh, so that a repeated query does not need to search.
+// nodes that are blocked by dynamic obstacles (see NavTiles) are avoided, except for the end node.
+
+public class NavQuery {
+
+    private final NavMesh navMesh;
+    private final NavMeshData data;
+    private final IndexedMinHeap open;
+    private final float[] cost;           // cost from start node (g)
+    private final int[] prev;             // previous node id on the best path found so far, -1 for the start node
+    private final int[] visited;          // generation in which cost and prev were set
+    private final int[] closed;           // generation in which the node was closed
+    private int generation;
+    private final NavStringPuller stringPuller;
+    private final NavClusterQuery clusterQuery;       // null if the nav mesh has no cluster graph
+    private final IntArray pathIds;
+    private final NavPathCache pathCache;
+
+    public NavQuery(NavMesh navMesh) {
+        this.navMesh = navMesh;
+        this.data = navMesh.getData();
+        int numNodes = data.numNodes;
+        open = new IndexedMinHeap(numNodes);
+        cost = new float[numNodes];
+        prev = new int[numNodes];
+        visited = new int[numNodes];
+        closed = new int[numNodes];
+        stringPuller = new NavStringPuller();
+        NavClusterGraph clusterGraph = navMesh.getClusterGraph();
+        clusterQuery = clusterGraph == null ? null : new NavClusterQuery(clusterGraph);
+        pathIds = new IntArray();
+        pathCache = navMesh.getPathCache();
+    }
+
+    public NavMesh getNavMesh() {
+        return navMesh;
+    }
+
+    // start a new query, this invalidates the results of the previous query
+    private void nextGeneration() {
+        generation++;
+        if(generation == Integer.MAX_VALUE) {       // wrap around, the stamps have to be reset
+            for(int i = 0; i < visited.length; i++) {
+                visited[i] = 0;
+                closed[i] = 0;
+            }
+            generation = 1;
+        }
+        open.clear();
+    }
+
+    // find the shortest node path from start to end node
+    // if the end node cannot be reached, the path leads to the reachable node closest to the end node
+    // returns true if the end node was reached
+    // this also sets the portals of the path in the string puller
+    public boolean findPath( NavNode startNode, NavNode endNode, Array<NavNode> nodePath ) {
+        int start = startNode.id;
+        int end = endNode.id;
+        NavTiles.State obstacles = navMesh.getObstacleState();
+        if(pathCache.get(start, end, pathIds, stringPuller, obstacles)) {
+            nodePath.clear();
+            for(int i = 0; i < pathIds.size; i++)
+                nodePath.add(navMesh.navNodes.get(pathIds.get(i)));
+            return nodePath.peek() == endNode;
+        }
+
+        if(clusterQuery != null && clusterQuery.findPath(start, end, pathIds, obstacles)) {
+            nodePath.clear();
+            for(int i = 0; i < pathIds.size; i++)
+                nodePath.add(navMesh.navNodes.get(pathIds.get(i)));
+        }
+        else {
+            int best = search(start, end, obstacles.blocked);
+            nodePath.clear();
+            for(int id = best; id >= 0; id = prev[id])
+                nodePath.add(navMesh.navNodes.get(id));
+            nodePath.reverse();
+        }
+        stringPuller.setPortals(nodePath);
+        pathCache.put(start, end, nodePath, stringPuller, obstacles.version);
+        return nodePath.peek() == endNode;
+    }
+
+    // find the node path from start to end node and the way points from start point to end point
+    // start and end point should be on the start and end node (see NavMesh.findNodeOnMesh)
+    public boolean makePath( NavNode startNode, Vector3 startPoint, NavNode endNode, Vector3 endPoint, Array<NavNode> nodePath, Array<Vector3> pointPath ) {
+        boolean reached = findPath(startNode, endNode, nodePath);
+        stringPuller.makePath(startPoint, endPoint, pointPath);       // the portals were set by findPath
+        return reached;
+    }
+
+    // returns the id of the last node of the path, i.e. the end node if it was reached
+    private int search( int start, int end, boolean[] blocked ) {
+        nextGeneration();
+        final int[] linkStart = data.linkStart;
+        final int[] linkNode = data.linkNode;
+        final float[] linkCost = data.linkCost;
+
+        cost[start] = 0;
+        prev[start] = -1;
+        visited[start] = generation;
+        open.add(start, data.centreDistance(start, end));
+
+        int best = start;                   // closest node to the end node, in case it is unreachable
+        float bestDistance = Float.MAX_VALUE;
+        while(!open.isEmpty()) {
+            int id = open.pop();
+            if(id == end)
+                return end;
+            closed[id] = generation;
+            float h = data.centreDistance(id, end);
+            if(h < bestDistance) {
+                bestDistance = h;
+                best = id;
+            }
+            for(int link = linkStart[id]; link < linkStart[id+1]; link++) {
+                int n = linkNode[link];
+                if(closed[n] == generation || (blocked != null && blocked[n] && n != end))
+                    continue;
+                float alt = cost[id] + linkCost[link];
+                if(visited[n] != generation || alt < cost[n]) {
+                    visited[n] = generation;
+                    cost[n] = alt;
+                    prev[n] = id;
+                    open.add(n, alt + data.centreDistance(n, end));
+                }
+            }
+        }
+        return best;
+    }
+}
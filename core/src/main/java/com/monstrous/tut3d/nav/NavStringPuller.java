@@ -1,79 +1,114 @@
 package com.monstrous.tut3d.nav;
 
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Array;
-import com.monstrous.tut3d.Settings;
+import com.badlogic.gdx.utils.Pool;
 
-public class NavStringPuller {
+// string pulling: turns a node path into a list of way points
+// an instance keeps its portal buffer and a pool of way point vectors between calls, so that in steady state it does
+// not allocate. Use one instance per thread.
+//
+// The way point vectors in the point path are owned by the puller: they are recycled on the next call with the same
+// point path, or can be returned with free().
+// The portals only depend on the node path, so they can also be set from a cache (see NavPathCache) and be reused for
+// different start and target points.
 
-    private static Vector3 tmpVec = new Vector3();
+public class NavStringPuller {
+    public static final int PORTAL_SIZE = 6;       // left x,y,z and right x,y,z
 
     // a portal is an edge between two adjacent nodes (i.e. triangles) on the path
-    public static class Portal {
-        public Vector3 left;
-        public Vector3 right;
-        public boolean slopeChange;     // indicator if portal connects nodes with different slope
-
-        public Portal(Vector3 left, Vector3 right, boolean slopeChange ) {
-            this.left = new Vector3(left);
-            this.right = new Vector3(right);
-            this.slopeChange = slopeChange;
+    private float[] portals = new float[PORTAL_SIZE * 16];
+    private boolean[] slopeChanges = new boolean[16];   // indicator per portal if it connects nodes with different slope
+    private int numPortals;
+    private int numInteriorPortals;                     // portals between the nodes, i.e. without the start and target point
+    private final Vector3 edgeStart = new Vector3();
+    private final Vector3 edgeEnd = new Vector3();
+    private final Pool<Vector3> vectors = new Pool<Vector3>() {
+        @Override
+        protected Vector3 newObject() {
+            return new Vector3();
         }
-    }
+    };
 
 
     // string pulling algo:
     // "simple stupid funnel algorithm" by Mikko Mononen
     // (with the addition that slope changes force a way point)
 
-    public static void makePath(Vector3 startPoint, Vector3 targetPoint, Array<NavNode> nodePath, Array<Vector3> pointPath ) {
-
-        Array<Portal> portals = new Array<>();
-        Vector3 edgeStart = new Vector3();
-        Vector3 edgeEnd = new Vector3();
-
-        // build a list of portals, i.e. edges between triangles on the node path to the goal
-
-        portals.clear();
-        portals.add(new Portal(startPoint, startPoint, false));
+    public void makePath(Vector3 startPoint, Vector3 targetPoint, Array<NavNode> nodePath, Array<Vector3> pointPath ) {
+        setPortals(nodePath);
+        makePath(startPoint, targetPoint, pointPath);
+    }
 
+    // build a list of portals, i.e. edges between triangles on the node path to the goal
+    // portal 0 is left for the start point
+    public void setPortals( Array<NavNode> nodePath ) {
+        numPortals = 1;
         for (int i = 0; i < nodePath.size - 1; i++) {
             NavNode node = nodePath.get(i);
             NavNode nextNode = nodePath.get(i + 1);
-            getEdge(node, nextNode, edgeStart, edgeEnd);
+            node.getEdge(nextNode, edgeStart, edgeEnd);     // shared edge was recorded when the nav mesh was built
             boolean slopeChange = ( node.normal.dot(nextNode.normal) < 0.99f ); // use dot product of normals to detect slope change
-            portals.add(new Portal(edgeEnd, edgeStart, slopeChange));
+            addPortal(edgeEnd, edgeStart, slopeChange);
         }
+        numInteriorPortals = numPortals - 1;
+    }
 
-        portals.add(new Portal(targetPoint, targetPoint, false));
+    // set the portals between the nodes from a copy, see getPortals()
+    public void setPortals( float[] interiorPortals, boolean[] interiorSlopeChanges, int count ) {
+        ensureCapacity(count + 2);
+        System.arraycopy(interiorPortals, 0, portals, PORTAL_SIZE, PORTAL_SIZE * count);
+        System.arraycopy(interiorSlopeChanges, 0, slopeChanges, 1, count);
+        numInteriorPortals = count;
+        numPortals = count + 1;
+    }
+
+    public int getNumInteriorPortals() {
+        return numInteriorPortals;
+    }
+
+    // copy the portals between the nodes, PORTAL_SIZE floats per portal
+    public void getPortals( float[] interiorPortals, boolean[] interiorSlopeChanges ) {
+        System.arraycopy(portals, PORTAL_SIZE, interiorPortals, 0, PORTAL_SIZE * numInteriorPortals);
+        System.arraycopy(slopeChanges, 1, interiorSlopeChanges, 0, numInteriorPortals);
+    }
+
+    // make the way points through the portals that were set with setPortals()
+    public void makePath(Vector3 startPoint, Vector3 targetPoint, Array<Vector3> pointPath ) {
+        numPortals = 0;
+        addPortal(startPoint, startPoint, false);
+        numPortals = numInteriorPortals + 1;
+        addPortal(targetPoint, targetPoint, false);
 
         // use the portals to create a list of way points
-        pointPath.clear();
-        pointPath.add(new Vector3(startPoint));
+        free(pointPath);
+        addPoint(pointPath, startPoint.x, startPoint.y, startPoint.z);
 
         // define a funnel with an apex, a left foot and a right foot
-        Vector3 apex = startPoint;
-        Vector3 leftFoot = startPoint;
-        Vector3 rightFoot = startPoint;
+        float apexX = startPoint.x, apexY = startPoint.y, apexZ = startPoint.z;
+        float leftX = apexX, leftY = apexY, leftZ = apexZ;
+        float rightX = apexX, rightY = apexY, rightZ = apexZ;
         int apexIndex = 0, leftIndex = 0, rightIndex = 0;
 
-        for (int i = 1; i < portals.size; i++) {
-            Portal portal = portals.get(i);
+        for (int i = 1; i < numPortals; i++) {
+            int p = PORTAL_SIZE * i;
+            float portalLeftX = portals[p], portalLeftY = portals[p+1], portalLeftZ = portals[p+2];
+            float portalRightX = portals[p+3], portalRightY = portals[p+4], portalRightZ = portals[p+5];
 
             // update right leg
-            if ( area(apex, rightFoot, portal.right) <= 0) {
-                if (apex.epsilonEquals(rightFoot) || area(apex, leftFoot, portal.right) > 0f) {
+            if ( area(apexX, apexZ, rightX, rightZ, portalRightX, portalRightZ) <= 0) {
+                if (epsilonEquals(apexX, apexY, apexZ, rightX, rightY, rightZ) || area(apexX, apexZ, leftX, leftZ, portalRightX, portalRightZ) > 0f) {
                     // tighten the funnel
-                    rightFoot = portal.right;
+                    rightX = portalRightX; rightY = portalRightY; rightZ = portalRightZ;
                     rightIndex = i;
                 } else {
                     // right over left,insert left into path and restart scan from left foot
-                    pointPath.add(new Vector3(leftFoot));
-                    apex = leftFoot;
+                    addPoint(pointPath, leftX, leftY, leftZ);
+                    apexX = leftX; apexY = leftY; apexZ = leftZ;
                     apexIndex = leftIndex;
                     // reset portal
-                    leftFoot = apex;
-                    rightFoot = apex;
+                    rightX = apexX; rightY = apexY; rightZ = apexZ;
                     leftIndex = apexIndex;
                     rightIndex = apexIndex;
                     i = apexIndex;
@@ -81,19 +116,18 @@ public class NavStringPuller {
                 }
             }
             // update left leg
-            if (area(apex, leftFoot, portal.left) >= 0) {
-                if (apex.epsilonEquals(leftFoot) || area(apex, rightFoot, portal.left) < 0f) {
+            if (area(apexX, apexZ, leftX, leftZ, portalLeftX, portalLeftZ) >= 0) {
+                if (epsilonEquals(apexX, apexY, apexZ, leftX, leftY, leftZ) || area(apexX, apexZ, rightX, rightZ, portalLeftX, portalLeftZ) < 0f) {
                     // tighten the funnel
-                    leftFoot = portal.left;
+                    leftX = portalLeftX; leftY = portalLeftY; leftZ = portalLeftZ;
                     leftIndex = i;
                 } else {
                     // left over right, insert right into path and restart scan from right foot
-                    pointPath.add(new Vector3(rightFoot));
-                    apex = rightFoot;
+                    addPoint(pointPath, rightX, rightY, rightZ);
+                    apexX = rightX; apexY = rightY; apexZ = rightZ;
                     apexIndex = rightIndex;
                     // reset portal
-                    leftFoot = apex;
-                    rightFoot = apex;
+                    leftX = apexX; leftY = apexY; leftZ = apexZ;
                     leftIndex = apexIndex;
                     rightIndex = apexIndex;
                     i = apexIndex;
@@ -103,14 +137,16 @@ public class NavStringPuller {
 
             // force a way point on a slope change so that the path follows the slopes (e.g. over a bridge)
             // this is an addition to SSFA
-            if(portal.slopeChange){
-                Vector3 wayPoint = new Vector3(portal.left).add(portal.right).scl(0.5f);    // mid point of portal, could be smarter
-                pointPath.add( wayPoint );
-                apex = wayPoint;
+            if(slopeChanges[i]){
+                // mid point of portal, could be smarter
+                apexX = (portalLeftX + portalRightX) * 0.5f;
+                apexY = (portalLeftY + portalRightY) * 0.5f;
+                apexZ = (portalLeftZ + portalRightZ) * 0.5f;
+                addPoint(pointPath, apexX, apexY, apexZ);
                 apexIndex = i;
                 // reset portal
-                leftFoot = apex;
-                rightFoot = apex;
+                leftX = apexX; leftY = apexY; leftZ = apexZ;
+                rightX = apexX; rightY = apexY; rightZ = apexZ;
                 leftIndex = apexIndex;
                 rightIndex = apexIndex;
                 continue;
@@ -118,41 +154,76 @@ public class NavStringPuller {
 
         }
         // add end point if it was skipped
-        if(pointPath.size == 1 || !pointPath.get(pointPath.size-1).epsilonEquals(targetPoint))
-            pointPath.add(new Vector3(targetPoint) );
+        Vector3 last = pointPath.peek();
+        if(pointPath.size == 1 || !epsilonEquals(last.x, last.y, last.z, targetPoint.x, targetPoint.y, targetPoint.z))
+            addPoint(pointPath, targetPoint.x, targetPoint.y, targetPoint.z);
     }
 
+    // way points for a straight line, e.g. when the nav mesh was found to be clear between the points (see NavMesh.raycast)
+    public void makeStraightPath(Vector3 startPoint, Vector3 targetPoint, Array<Vector3> pointPath ) {
+        free(pointPath);
+        addPoint(pointPath, startPoint.x, startPoint.y, startPoint.z);
+        addPoint(pointPath, targetPoint.x, targetPoint.y, targetPoint.z);
+    }
 
-    // get the edge between two triangles that we know are connected
-    private static void getEdge(NavNode a, NavNode b, Vector3 start, Vector3 end ){
+    // return the way point vectors of a point path to the pool
+    public void free( Array<Vector3> pointPath ) {
+        vectors.freeAll(pointPath);
+        pointPath.clear();
+    }
 
-        boolean p0matches = (a.p0.epsilonEquals(b.p0) || a.p0.epsilonEquals(b.p1)|| a.p0.epsilonEquals(b.p2) );
-        boolean p1matches = (a.p1.epsilonEquals(b.p0) || a.p1.epsilonEquals(b.p1)|| a.p1.epsilonEquals(b.p2) );
-        boolean p2matches = (a.p2.epsilonEquals(b.p0) || a.p2.epsilonEquals(b.p1)|| a.p2.epsilonEquals(b.p2) );
+    private void ensureCapacity( int count ) {
+        if(count <= slopeChanges.length)
+            return;
+        int capacity = Math.max(count, 2 * slopeChanges.length);
+        float[] newPortals = new float[PORTAL_SIZE * capacity];
+        System.arraycopy(portals, 0, newPortals, 0, portals.length);
+        portals = newPortals;
+        boolean[] newSlopeChanges = new boolean[capacity];
+        System.arraycopy(slopeChanges, 0, newSlopeChanges, 0, slopeChanges.length);
+        slopeChanges = newSlopeChanges;
+    }
 
-        if(p0matches && p1matches){
-            start.set(a.p0);
-            end.set(a.p1);
-        }
-        else if(p1matches && p2matches){
-            start.set(a.p1);
-            end.set(a.p2);
-        }
-        else if(p2matches && p0matches){
-            start.set(a.p2);
-            end.set(a.p0);
-        }
-        else
-            throw new RuntimeException("Cannot match edges");
+    private void addPortal( Vector3 left, Vector3 right, boolean slopeChange ) {
+        ensureCapacity(numPortals + 1);
+        int p = PORTAL_SIZE * numPortals;
+        portals[p] = left.x;
+        portals[p+1] = left.y;
+        portals[p+2] = left.z;
+        portals[p+3] = right.x;
+        portals[p+4] = right.y;
+        portals[p+5] = right.z;
+        slopeChanges[numPortals] = slopeChange;
+        numPortals++;
     }
 
+    private void addPoint( Array<Vector3> pointPath, float x, float y, float z ) {
+        pointPath.add(vectors.obtain().set(x, y, z));
+    }
+
+    // portals of the last call of makePath, e.g. for debug rendering
+    public int getNumPortals() {
+        return numPortals;
+    }
+
+    public void getPortal( int index, Vector3 left, Vector3 right ) {
+        int p = PORTAL_SIZE * index;
+        left.set(portals[p], portals[p+1], portals[p+2]);
+        right.set(portals[p+3], portals[p+4], portals[p+5]);
+    }
+
+    // same as Vector3.epsilonEquals(Vector3)
+    private static boolean epsilonEquals(float ax, float ay, float az, float bx, float by, float bz) {
+        return Math.abs(bx - ax) <= MathUtils.FLOAT_ROUNDING_ERROR && Math.abs(by - ay) <= MathUtils.FLOAT_ROUNDING_ERROR
+            && Math.abs(bz - az) <= MathUtils.FLOAT_ROUNDING_ERROR;
+    }
 
     // 2d function to test if triangle a,b,c has positive or negative area, negative means the funnel legs are crossed
-    private static float area(Vector3 a, Vector3 b, Vector3 c) {
-        float ax = b.x - a.x;
-        float az = b.z - a.z;
-        float bx = c.x - a.x;
-        float bz = c.z - a.z;
-        return - (bx*az - ax*bz);
+    private static float area(float ax, float az, float bx, float bz, float cx, float cz) {
+        float abx = bx - ax;
+        float abz = bz - az;
+        float acx = cx - ax;
+        float acz = cz - az;
+        return - (acx*abz - abx*acz);
     }
 }
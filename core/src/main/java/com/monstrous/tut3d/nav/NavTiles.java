@@ -0,0 +1,280 @@
+package com.monstrous.tut3d.nav;
+
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.monstrous.tut3d.Settings;
+
+
+// square tiles (in x,z) over the nav mesh to apply dynamic obstacles
+// each node belongs to the tile under its centre, and is listed in every tile its triangle overlaps. An obstacle blocks
+// the nodes whose triangle overlaps its footprint (in x,z, at about the same height). The mesh is not cut around the
+// obstacle, so the precision is one nav triangle: on a mesh with big triangles a small object blocks a big area.
+// When an obstacle appears, moves or disappears, only the tiles under its old and new footprint are rebuilt, i.e. the
+// nodes in those tiles are checked against the obstacles again. Searches skip the links to blocked nodes.
+//
+// The blocked nodes are published as a State that is never modified: a rebuild that changes something makes a new
+// state, so a query on a worker thread sees the same blocked nodes from start to end.
+// Each tile keeps the state version in which its blocked nodes last changed, so a path only has to be searched again
+// when it crosses a tile that changed after the path was made.
+
+public class NavTiles {
+    public static float TILE_SIZE = 4f;             // tile width in world units
+    public static float MOVE_MARGIN = 0.1f;         // obstacle movement that is ignored
+
+    // blocked nodes at one point in time
+    public static class State {
+        public final int version;
+        public final int unblockVersion;            // last version in which a node became unblocked
+        public final int[] tileOf;                  // tile per node
+        public final boolean[] blocked;             // per node, null if no node is blocked
+        public final int[] tileVersion;             // per tile, version in which its blocked nodes last changed
+
+        State( int version, int unblockVersion, int[] tileOf, boolean[] blocked, int[] tileVersion ) {
+            this.version = version;
+            this.unblockVersion = unblockVersion;
+            this.tileOf = tileOf;
+            this.blocked = blocked;
+            this.tileVersion = tileVersion;
+        }
+
+        public boolean isBlocked( int id ) {
+            return blocked != null && blocked[id];
+        }
+
+        // true if no node of the path is in a tile that changed after the given version
+        public boolean isValid( Array<NavNode> nodePath, int sinceVersion ) {
+            if(sinceVersion == version)
+                return true;
+            for(int i = 0; i < nodePath.size; i++) {
+                if(tileVersion[tileOf[nodePath.get(i).id]] > sinceVersion)
+                    return false;
+            }
+            return true;
+        }
+
+        public boolean isValid( int[] nodes, int count, int sinceVersion ) {
+            if(sinceVersion == version)
+                return true;
+            for(int i = 0; i < count; i++) {
+                if(tileVersion[tileOf[nodes[i]]] > sinceVersion)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private final NavMeshData data;
+    private final float originX, originZ;
+    public final int tilesX, tilesZ;
+    private final int[] tileStart;                  // offset into tileNodes per tile, one extra entry at the end
+    private final int[] tileNodes;                  // the nodes whose triangle overlaps the tile, per tile
+    private final Array<NavObstacle> obstacles;
+    private final boolean[] dirty;                  // per tile
+    private final IntArray dirtyTiles;
+    private int numBlocked;
+    private volatile State state;
+
+    public NavTiles( NavMeshData data ) {
+        this.data = data;
+        int numNodes = data.numNodes;
+        final float[] corners = data.corners;
+        float minX = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for(int v = 0; v < 3*numNodes; v++) {
+            minX = Math.min(minX, corners[3*v]);
+            maxX = Math.max(maxX, corners[3*v]);
+            minZ = Math.min(minZ, corners[3*v+2]);
+            maxZ = Math.max(maxZ, corners[3*v+2]);
+        }
+        if(numNodes == 0)
+            minX = maxX = minZ = maxZ = 0;
+        originX = minX;
+        originZ = minZ;
+        tilesX = (int)((maxX - minX) / TILE_SIZE) + 1;
+        tilesZ = (int)((maxZ - minZ) / TILE_SIZE) + 1;
+        int numTiles = tilesX * tilesZ;
+
+        int[] tileOf = new int[numNodes];
+        tileStart = new int[numTiles+1];
+        for(int id = 0; id < numNodes; id++) {
+            tileOf[id] = tileX(data.centres[3*id]) + tilesX * tileZ(data.centres[3*id+2]);
+            for(int z = tileZ(minCorner(id, 2)); z <= tileZ(maxCorner(id, 2)); z++)
+                for(int x = tileX(minCorner(id, 0)); x <= tileX(maxCorner(id, 0)); x++)
+                    tileStart[x + tilesX * z + 1]++;
+        }
+        for(int t = 0; t < numTiles; t++)
+            tileStart[t+1] += tileStart[t];
+        tileNodes = new int[tileStart[numTiles]];
+        int[] fill = new int[numTiles];
+        for(int id = 0; id < numNodes; id++) {
+            for(int z = tileZ(minCorner(id, 2)); z <= tileZ(maxCorner(id, 2)); z++) {
+                for(int x = tileX(minCorner(id, 0)); x <= tileX(maxCorner(id, 0)); x++) {
+                    int t = x + tilesX * z;
+                    tileNodes[tileStart[t] + fill[t]++] = id;
+                }
+            }
+        }
+
+        obstacles = new Array<>();
+        dirty = new boolean[numTiles];
+        dirtyTiles = new IntArray();
+        state = new State(0, 0, tileOf, null, new int[numTiles]);
+    }
+
+    // the current blocked nodes, can be called from any thread
+    public State getState() {
+        return state;
+    }
+
+    public NavObstacle addObstacle() {
+        NavObstacle obstacle = new NavObstacle();
+        obstacles.add(obstacle);
+        return obstacle;
+    }
+
+    // the nodes it blocked are released on the next update
+    public void removeObstacle( NavObstacle obstacle ) {
+        if(!obstacles.removeValue(obstacle, true))
+            return;
+        if(obstacle.appliedActive)
+            markTiles(obstacle.applied);
+        obstacle.appliedActive = false;
+    }
+
+    // apply the obstacles that changed, to be called once per frame on the main thread
+    // returns true if a new state was published
+    public boolean update() {
+        for(int i = 0; i < obstacles.size; i++) {
+            NavObstacle obstacle = obstacles.get(i);
+            if(!hasChanged(obstacle))
+                continue;
+            if(obstacle.appliedActive)
+                markTiles(obstacle.applied);
+            if(obstacle.active)
+                markTiles(obstacle.bounds);
+            obstacle.applied.set(obstacle.bounds);
+            obstacle.appliedActive = obstacle.active;
+        }
+        if(dirtyTiles.size == 0)
+            return false;
+        return rebuild();
+    }
+
+    private boolean hasChanged( NavObstacle obstacle ) {
+        if(obstacle.active != obstacle.appliedActive)
+            return true;
+        if(!obstacle.active)
+            return false;
+        return !obstacle.bounds.min.epsilonEquals(obstacle.applied.min, MOVE_MARGIN) || !obstacle.bounds.max.epsilonEquals(obstacle.applied.max, MOVE_MARGIN);
+    }
+
+    private void markTiles( BoundingBox box ) {
+        int x0 = Math.max(0, tileX(box.min.x));
+        int x1 = Math.min(tilesX-1, tileX(box.max.x));
+        int z0 = Math.max(0, tileZ(box.min.z));
+        int z1 = Math.min(tilesZ-1, tileZ(box.max.z));
+        for(int z = z0; z <= z1; z++) {
+            for(int x = x0; x <= x1; x++) {
+                int t = x + tilesX * z;
+                if(!dirty[t]) {
+                    dirty[t] = true;
+                    dirtyTiles.add(t);
+                }
+            }
+        }
+    }
+
+    // check the nodes of the dirty tiles against the obstacles, the arrays of the state are copied on the first change
+    private boolean rebuild() {
+        State old = state;
+        int version = old.version + 1;
+        boolean[] blocked = null;
+        int[] tileVersion = null;
+        boolean unblocked = false;
+        for(int i = 0; i < dirtyTiles.size; i++) {
+            int t = dirtyTiles.get(i);
+            dirty[t] = false;
+            for(int k = tileStart[t]; k < tileStart[t+1]; k++) {
+                int id = tileNodes[k];
+                boolean covered = isCovered(id);
+                if(covered == (blocked != null ? blocked[id] : old.isBlocked(id)))      // a node can be in more than one dirty tile
+                    continue;
+                if(blocked == null) {
+                    blocked = old.blocked == null ? new boolean[data.numNodes] : old.blocked.clone();
+                    tileVersion = old.tileVersion.clone();
+                }
+                blocked[id] = covered;
+                tileVersion[old.tileOf[id]] = version;
+                if(covered)
+                    numBlocked++;
+                else {
+                    numBlocked--;
+                    unblocked = true;
+                }
+            }
+        }
+        dirtyTiles.clear();
+        if(blocked == null)
+            return false;
+        state = new State(version, unblocked ? version : old.unblockVersion, old.tileOf, numBlocked == 0 ? null : blocked, tileVersion);
+        return true;
+    }
+
+    private boolean isCovered( int id ) {
+        for(int i = 0; i < obstacles.size; i++) {
+            NavObstacle obstacle = obstacles.get(i);
+            if(obstacle.appliedActive && overlaps(id, obstacle.applied))
+                return true;
+        }
+        return false;
+    }
+
+    // does the triangle of the node overlap the box in x,z? The triangle must also be at about the height of the box.
+    // separating axis test: the axes of the box and the edge normals of the triangle
+    private boolean overlaps( int id, BoundingBox box ) {
+        if(maxCorner(id, 0) < box.min.x || minCorner(id, 0) > box.max.x || maxCorner(id, 2) < box.min.z || minCorner(id, 2) > box.max.z)
+            return false;
+        if(maxCorner(id, 1) < box.min.y - Settings.navHeight || minCorner(id, 1) > box.max.y)
+            return false;
+        final float[] corners = data.corners;
+        int c = 9*id;
+        for(int e = 0; e < 3; e++) {
+            int a = c + 3*e;
+            int b = c + 3*((e+1)%3);
+            int o = c + 3*((e+2)%3);
+            float nx = corners[b+2] - corners[a+2];         // normal of edge a-b in x,z
+            float nz = corners[a] - corners[b];
+            float edge = nx * corners[a] + nz * corners[a+2];
+            float inside = nx * corners[o] + nz * corners[o+2] - edge;       // side of the opposite corner
+            // the box corner furthest to the inside of the edge
+            float bx = (nx * inside >= 0) ? box.max.x : box.min.x;
+            float bz = (nz * inside >= 0) ? box.max.z : box.min.z;
+            if((nx * bx + nz * bz - edge) * inside < 0)
+                return false;
+        }
+        return true;
+    }
+
+    private float minCorner( int id, int axis ) {
+        final float[] corners = data.corners;
+        return Math.min(corners[9*id+axis], Math.min(corners[9*id+3+axis], corners[9*id+6+axis]));
+    }
+
+    private float maxCorner( int id, int axis ) {
+        final float[] corners = data.corners;
+        return Math.max(corners[9*id+axis], Math.max(corners[9*id+3+axis], corners[9*id+6+axis]));
+    }
+
+    public int getNumBlocked() {
+        return numBlocked;
+    }
+
+    private int tileX( float x ) {
+        return (int)Math.floor((x - originX) / TILE_SIZE);
+    }
+
+    private int tileZ( float z ) {
+        return (int)Math.floor((z - originZ) / TILE_SIZE);
+    }
+}
@@ -0,0 +1,179 @@
+package com.monstrous.tut3d.nav;
+
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.Pool;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+import com.badlogic.gdx.utils.async.AsyncTask;
+
+import java.util.Comparator;
+
+
+// service to search paths for nav actors on worker threads
+// actors queue a request and keep following their current path until the new path is handed back in update(),
+// which is called once per frame. Only a limited number of requests is started per frame, the most urgent
+// (i.e. smallest priority value, e.g. distance to the player) first.
+//
+// Point location (finding the start and end node) is done by the caller on the main thread, the workers only
+// search the node path and pull the string, using their own NavQuery. The nav mesh is not modified after it is built,
+// so it can be shared between the threads.
+// With zero worker threads (e.g. on the web platform) the requests are solved inside update().
+
+public class PathService implements Disposable {
+    public static int MAX_REQUESTS_PER_FRAME = 4;        // budget: number of requests started per frame
+
+    public class PathRequest implements AsyncTask<Void>, Pool.Poolable {
+        NavActor actor;
+        NavMesh navMesh;
+        NavNode startNode;
+        NavNode endNode;
+        final Vector3 start = new Vector3();
+        final Vector3 destination = new Vector3();
+        float priority;
+        int epoch;
+        AsyncResult<Void> result;
+        Array<NavNode> nodePath = new Array<>();       // swapped with the arrays of the actor on delivery
+        Array<Vector3> pointPath = new Array<>();
+
+        // runs on a worker thread
+        @Override
+        public Void call() {
+            NavQuery query = queries.get();
+            if(query == null || query.getNavMesh() != navMesh) {
+                query = new NavQuery(navMesh);
+                queries.set(query);
+            }
+            solve(query);
+            return null;
+        }
+
+        void solve( NavQuery query ) {
+            query.makePath(startNode, start, endNode, destination, nodePath, pointPath);
+        }
+
+        @Override
+        public void reset() {
+            actor = null;
+            navMesh = null;
+            startNode = null;
+            endNode = null;
+            result = null;
+            nodePath.clear();       // the vectors of the point path are recycled by the next makePath
+        }
+    }
+
+    private final int numThreads;
+    private AsyncExecutor executor;                     // created on the first request
+    private final Array<PathRequest> pending;           // waiting to be started
+    private final Array<PathRequest> inFlight;          // being solved on a worker thread
+    private final Pool<PathRequest> pool;
+    private final ThreadLocal<NavQuery> queries;        // one query per worker thread
+    private NavQuery query;                             // for solving on the calling thread
+    private int epoch;                                  // incremented on clear(), results of an older epoch are dropped
+    private final Comparator<PathRequest> byPriority;
+
+    // numThreads: number of worker threads, 0 to solve the requests on the calling thread
+    public PathService(int numThreads) {
+        this.numThreads = numThreads;
+        pending = new Array<>();
+        inFlight = new Array<>();
+        pool = new Pool<PathRequest>() {
+            @Override
+            protected PathRequest newObject() {
+                return new PathRequest();
+            }
+        };
+        queries = new ThreadLocal<>();
+        byPriority = new Comparator<PathRequest>() {
+            @Override
+            public int compare(PathRequest a, PathRequest b) {
+                return Float.compare(a.priority, b.priority);
+            }
+        };
+    }
+
+    // queue a path request for the actor, start and destination must be on the nav mesh (see NavMesh.findNodeOnMesh)
+    // a request of the same actor that has not been started yet is replaced
+    public void request( NavActor actor, NavNode startNode, Vector3 start, NavNode endNode, Vector3 destination, float priority ) {
+        PathRequest request = null;
+        for(PathRequest r : pending) {
+            if(r.actor == actor)
+                request = r;
+        }
+        if(request == null) {
+            request = pool.obtain();
+            pending.add(request);
+        }
+        request.actor = actor;
+        request.navMesh = actor.getNavMesh();
+        request.startNode = startNode;
+        request.endNode = endNode;
+        request.start.set(start);
+        request.destination.set(destination);
+        request.priority = priority;
+        request.epoch = epoch;
+        actor.pathPending = true;
+    }
+
+    // call once per frame: hands the finished paths to their actors and starts the most urgent requests
+    public void update() {
+        for(int i = inFlight.size-1; i >= 0; i--) {
+            PathRequest request = inFlight.get(i);
+            if(request.result.isDone()) {
+                request.result.get();           // rethrows an exception of the worker
+                inFlight.removeIndex(i);
+                deliver(request);
+            }
+        }
+
+        if(pending.size == 0)
+            return;
+        pending.sort(byPriority);
+        int count = Math.min(pending.size, MAX_REQUESTS_PER_FRAME);
+        for(int i = 0; i < count; i++) {
+            PathRequest request = pending.get(i);
+            if(numThreads == 0) {
+                if(query == null || query.getNavMesh() != request.navMesh)
+                    query = new NavQuery(request.navMesh);
+                request.solve(query);
+                deliver(request);
+            }
+            else {
+                if(executor == null)
+                    executor = new AsyncExecutor(numThreads, "PathService");
+                request.result = executor.submit(request);
+                inFlight.add(request);
+            }
+        }
+        pending.removeRange(0, count-1);
+    }
+
+    private void deliver( PathRequest request ) {
+        if(request.epoch == epoch)
+            request.actor.swapPath(request);
+        pool.free(request);
+    }
+
+    // drop all requests, e.g. when the level is restarted
+    // requests that are being solved are still completed, but their results are discarded
+    public void clear() {
+        epoch++;
+        pool.freeAll(pending);
+        pending.clear();
+    }
+
+    public int getNumPending() {
+        return pending.size + inFlight.size;
+    }
+
+    @Override
+    public void dispose() {
+        clear();
+        if(executor != null)
+            executor.dispose();     // waits for the running searches to finish
+        executor = null;
+        inFlight.clear();
+    }
+}
@@ -1,12 +1,15 @@
 package com.monstrous.tut3d.physics;
 
+import com.badlogic.gdx.graphics.Mesh;
 import com.badlogic.gdx.graphics.g3d.ModelInstance;
 import com.badlogic.gdx.math.Quaternion;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
 import com.github.antzGames.gdx.ode4j.math.DQuaternion;
 import com.github.antzGames.gdx.ode4j.math.DQuaternionC;
 import com.github.antzGames.gdx.ode4j.math.DVector3;
 import com.github.antzGames.gdx.ode4j.math.DVector3C;
+import com.github.antzGames.gdx.ode4j.ode.DAABBC;
 import com.github.antzGames.gdx.ode4j.ode.DBody;
 import com.github.antzGames.gdx.ode4j.ode.DGeom;
 import com.monstrous.tut3d.Settings;
@@ -16,20 +19,98 @@ public class PhysicsBody {
     public final DGeom geom;
     private final Vector3 position;               // for convenience, matches geom.getPosition() but converted to Vector3
     private final Quaternion quaternion;          // for convenience, matches geom.getQuaternion() but converted to LibGDX Quaternion
-    public final ModelInstance debugInstance;    // visualisation of collision shape for debug view
+    public final CollisionShapeType shapeType;
+    public final Vector3 size;                    // bounding box of the collision instance: width, height, depth
+    public final Mesh collisionMesh;              // for a MESH shape, else null
+    public ModelInstance debugInstance;          // visualisation of collision shape for debug view, created by the physics view on first use
+    TriMeshDataCache.Entry triMesh;             // shared data of a MESH shape, released when the body is destroyed
     private final DQuaternion tmpQ;
     private final Vector3 linearVelocity;
+    private final PhysicsWorld physicsWorld;
+    // with a physics thread: state of the body per snapshot slot, see PhysicsWorld, else null
+    // position, geom quaternion (w,x,y,z), body quaternion, linear velocity, bounding box min and max, enabled, previous
+    private final float[] snapshot;
+    static final int SNAPSHOT_SIZE = 28;
+    private final float[] previous;         // position and geom quaternion (w,x,y,z) before the last step, for interpolation
 
-    public PhysicsBody(DGeom geom, ModelInstance debugInstance) {
+    public PhysicsBody(PhysicsWorld physicsWorld, DGeom geom, CollisionShapeType shapeType, float w, float h, float d, Mesh collisionMesh) {
+        this.physicsWorld = physicsWorld;
         this.geom = geom;
-        this.debugInstance = debugInstance;
+        this.shapeType = shapeType;
+        size = new Vector3(w, h, d);
+        this.collisionMesh = collisionMesh;
         position = new Vector3();
         linearVelocity = new Vector3();
         quaternion = new Quaternion();
         tmpQ = new DQuaternion();
+        snapshot = physicsWorld.threaded ? new float[PhysicsWorld.SNAPSHOT_SLOTS * SNAPSHOT_SIZE] : null;
+        previous = new float[7];
+    }
+
+    // keep the pose before a physics step, or after the body was moved so that it does not move in between
+    void storePrevious() {
+        DVector3C pos = geom.getPosition();
+        previous[0] = (float) pos.get0();
+        previous[1] = (float) pos.get1();
+        previous[2] = (float) pos.get2();
+        putQuaternion(previous, 3, geom.getQuaternion());
+    }
+
+    // copy the state of the geom and rigid body into a snapshot slot, on the physics thread after the steps
+    void takeSnapshot( int slot ) {
+        float[] s = snapshot;
+        int i = slot * SNAPSHOT_SIZE;
+        DVector3C pos = geom.getPosition();
+        s[i] = (float) pos.get0();
+        s[i+1] = (float) pos.get1();
+        s[i+2] = (float) pos.get2();
+        putQuaternion(s, i+3, geom.getQuaternion());
+        DBody rigidBody = geom.getBody();
+        putQuaternion(s, i+7, rigidBody == null ? geom.getQuaternion() : rigidBody.getQuaternion());
+        DVector3C v = rigidBody == null ? null : rigidBody.getLinearVel();
+        s[i+11] = v == null ? 0 : (float) v.get0();
+        s[i+12] = v == null ? 0 : (float) v.get1();
+        s[i+13] = v == null ? 0 : (float) v.get2();
+        DAABBC aabb = geom.getAABB();
+        s[i+14] = (float) aabb.getMin0();
+        s[i+15] = (float) aabb.getMin1();
+        s[i+16] = (float) aabb.getMin2();
+        s[i+17] = (float) aabb.getMax0();
+        s[i+18] = (float) aabb.getMax1();
+        s[i+19] = (float) aabb.getMax2();
+        s[i+20] = rigidBody != null && rigidBody.isEnabled() ? 1 : 0;
+        System.arraycopy(previous, 0, s, i+21, 7);
+    }
+
+    private static void putQuaternion( float[] s, int i, DQuaternionC q ) {
+        s[i] = (float) q.get0();
+        s[i+1] = (float) q.get1();
+        s[i+2] = (float) q.get2();
+        s[i+3] = (float) q.get3();
+    }
+
+    // after the game changed the body directly, e.g. moved it, both slots have to show the change
+    private void refreshSnapshot() {
+        if(snapshot == null)
+            return;
+        for(int slot = 0; slot < PhysicsWorld.SNAPSHOT_SLOTS; slot++)
+            takeSnapshot(slot);
+    }
+
+    // index of the snapshot the game can read, or -1 to read the geom
+    private int snapshotIndex() {
+        return snapshot == null ? -1 : physicsWorld.front * SNAPSHOT_SIZE;
+    }
+
+    private Quaternion getSnapshotQuaternion( int i ) {
+        quaternion.set(snapshot[i+1], snapshot[i+2], snapshot[i+3], snapshot[i]);
+        return quaternion;
     }
 
     public Vector3 getPosition() {
+        int i = snapshotIndex();
+        if(i >= 0)
+            return position.set(snapshot[i], snapshot[i+1], snapshot[i+2]);
         DVector3C pos = geom.getPosition();
         position.x = (float) pos.get0();
         position.y = (float) pos.get1();
@@ -38,11 +119,17 @@ public class PhysicsBody {
     }
 
     public void setPosition( Vector3 pos ) {
+        physicsWorld.waitForSteps();
         geom.setPosition(pos.x, pos.y, pos.z);
         // if the geom is attached to a rigid body it's position will also be changed
+        storePrevious();
+        refreshSnapshot();
     }
 
     public Quaternion getOrientation() {
+        int i = snapshotIndex();
+        if(i >= 0)
+            return getSnapshotQuaternion(i+3);
         DQuaternionC odeQ = geom.getQuaternion();
         float ow = (float) odeQ.get0();
         float ox = (float) odeQ.get1();
@@ -54,6 +141,9 @@ public class PhysicsBody {
 
     // get orientation of rigid body, i.e. without any geom offset rotation
     public Quaternion getBodyOrientation() {
+        int i = snapshotIndex();
+        if(i >= 0)
+            return getSnapshotQuaternion(i+7);
         DQuaternionC odeQ;
         if(geom.getBody() == null)      // if geom does not have a body attached, fall back to geom orientation
             odeQ = geom.getQuaternion();
@@ -67,28 +157,79 @@ public class PhysicsBody {
         return quaternion;
     }
 
+    // position between the previous and the current step, alpha from PhysicsWorld.getInterpolationAlpha()
+    public Vector3 getInterpolatedPosition( float alpha, Vector3 out ) {
+        int i = snapshotIndex();
+        float[] prev = i >= 0 ? snapshot : previous;
+        int p = i >= 0 ? i+21 : 0;
+        return out.set(prev[p], prev[p+1], prev[p+2]).lerp(getPosition(), alpha);
+    }
+
+    // geom orientation between the previous and the current step
+    public Quaternion getInterpolatedOrientation( float alpha, Quaternion out ) {
+        int i = snapshotIndex();
+        float[] prev = i >= 0 ? snapshot : previous;
+        int p = i >= 0 ? i+21 : 0;
+        return out.set(prev[p+4], prev[p+5], prev[p+6], prev[p+3]).slerp(getOrientation(), alpha);
+    }
+
     public void setOrientation( Quaternion q ){
+        physicsWorld.waitForSteps();
         tmpQ.set(q.w, q.x, q.y, q.z);       // convert to ODE quaternion
         geom.setQuaternion(tmpQ);
         // if the geom is attached to a rigid body it's rotation will also be changed
+        storePrevious();
+        refreshSnapshot();
     }
 
     public void applyForce( Vector3 force ){
+        if(physicsWorld.isStepping()) {
+            physicsWorld.commands.add(PhysicsCommands.FORCE, this, force.x, force.y, force.z, 0, 0, 0);
+            return;
+        }
         DBody rigidBody = geom.getBody();
         rigidBody.addForce(force.x, force.y, force.z);
     }
 
     public void applyForceAtPos( Vector3 force, Vector3 pos ){
+        if(physicsWorld.isStepping()) {
+            physicsWorld.commands.add(PhysicsCommands.FORCE_AT_POS, this, force.x, force.y, force.z, pos.x, pos.y, pos.z);
+            return;
+        }
         DBody rigidBody = geom.getBody();
         rigidBody.addForceAtPos(force.x, force.y, force.z, pos.x, pos.y, pos.z);
     }
 
     public void applyTorque( Vector3 torque ){
+        if(physicsWorld.isStepping()) {
+            physicsWorld.commands.add(PhysicsCommands.TORQUE, this, torque.x, torque.y, torque.z, 0, 0, 0);
+            return;
+        }
         DBody rigidBody = geom.getBody();
         rigidBody.addTorque(torque.x, torque.y, torque.z);
     }
 
+    // switched off e.g. for characters on a slope, so that they don't slide down
+    public void setGravityMode( boolean mode ) {
+        if(physicsWorld.isStepping()) {
+            physicsWorld.commands.add(PhysicsCommands.GRAVITY_MODE, this, mode ? 1 : 0, 0, 0, 0, 0, 0);
+            return;
+        }
+        geom.getBody().setGravityMode(mode);
+    }
+
+    // false for static geoms and for rigid bodies that went to sleep
+    public boolean isEnabled() {
+        int i = snapshotIndex();
+        if(i >= 0)
+            return snapshot[i+20] != 0;
+        return geom.getBody() != null && geom.getBody().isEnabled();
+    }
+
     public Vector3 getVelocity() {
+        int i = snapshotIndex();
+        if(i >= 0)
+            return linearVelocity.set(snapshot[i+11], snapshot[i+12], snapshot[i+13]);
         if(geom.getBody() == null)
             linearVelocity.set(Vector3.Zero);
         else {
@@ -98,17 +239,67 @@ public class PhysicsBody {
         return linearVelocity;
     }
 
+    // axis aligned bounding box of the geom in world space
+    public BoundingBox getBoundingBox( BoundingBox box ) {
+        int i = snapshotIndex();
+        if(i >= 0) {
+            box.min.set(snapshot[i+14], snapshot[i+15], snapshot[i+16]);
+            box.max.set(snapshot[i+17], snapshot[i+18], snapshot[i+19]);
+            box.update();
+            return box;
+        }
+        DAABBC aabb = geom.getAABB();
+        box.min.set((float) aabb.getMin0(), (float) aabb.getMin1(), (float) aabb.getMin2());
+        box.max.set((float) aabb.getMax0(), (float) aabb.getMax1(), (float) aabb.getMax2());
+        box.update();
+        return box;
+    }
+
     // used for player and enemy characters that have capsules for collision geometry
     public void setCapsuleCharacteristics() {
+        physicsWorld.waitForSteps();
         DBody rigidBody = geom.getBody();
         rigidBody.setDamping(Settings.playerLinearDamping, Settings.playerAngularDamping);
         rigidBody.setAutoDisableFlag(false);       // never allow player to get disabled
         rigidBody.setMaxAngularSpeed(0);    // keep capsule upright by not allowing rotations
     }
 
+    // take the body out of the simulation without destroying it, e.g. to keep it in a pool
+    public void park() {
+        physicsWorld.waitForSteps();
+        geom.disable();
+        if(geom.getBody() != null)
+            geom.getBody().disable();
+        refreshSnapshot();
+    }
+
+    // put a parked body back into the simulation at a new position, upright and at rest
+    // the previous pose is set to the new one as well (see setPosition), so it is not interpolated from where it was parked
+    public void unpark( Vector3 pos ) {
+        physicsWorld.waitForSteps();
+        setPosition(pos);
+        setOrientation(quaternion.idt());
+        DBody rigidBody = geom.getBody();
+        if(rigidBody != null) {
+            rigidBody.setLinearVel(0, 0, 0);
+            rigidBody.setAngularVel(0, 0, 0);
+            rigidBody.setForce(0, 0, 0);
+            rigidBody.setTorque(0, 0, 0);
+            rigidBody.enable();
+        }
+        geom.enable();
+        refreshSnapshot();
+    }
+
     public void destroy() {
+        physicsWorld.waitForSteps();
+        physicsWorld.removeBody(this);
         if(geom.getBody() != null)
             geom.getBody().destroy();
         geom.destroy();
+        if(triMesh != null) {
+            triMesh.release();
+            triMesh = null;
+        }
     }
 }
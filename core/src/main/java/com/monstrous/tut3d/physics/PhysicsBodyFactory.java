@@ -1,25 +1,12 @@
 package com.monstrous.tut3d.physics;
 
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Mesh;
-import com.badlogic.gdx.graphics.VertexAttributes;
-import com.badlogic.gdx.graphics.g3d.Material;
-import com.badlogic.gdx.graphics.g3d.Model;
 import com.badlogic.gdx.graphics.g3d.ModelInstance;
-import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
 import com.badlogic.gdx.graphics.g3d.model.Node;
-import com.badlogic.gdx.graphics.g3d.utils.MeshPartBuilder;
-import com.badlogic.gdx.graphics.g3d.utils.ModelBuilder;
-import com.badlogic.gdx.graphics.g3d.utils.shapebuilders.BoxShapeBuilder;
-import com.badlogic.gdx.graphics.g3d.utils.shapebuilders.CapsuleShapeBuilder;
-import com.badlogic.gdx.graphics.g3d.utils.shapebuilders.CylinderShapeBuilder;
-import com.badlogic.gdx.graphics.g3d.utils.shapebuilders.SphereShapeBuilder;
 import com.badlogic.gdx.math.Quaternion;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.math.collision.BoundingBox;
-import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
 import com.github.antzGames.gdx.ode4j.math.DQuaternion;
 import com.github.antzGames.gdx.ode4j.math.DQuaternionC;
@@ -36,22 +23,26 @@ public class PhysicsBodyFactory implements Disposable {
     private final DMass massInfo;
     private final Vector3 position;
     private final Quaternion q;
-    private final ModelBuilder modelBuilder;
-    private final Material material;
-    private final Array<Disposable> disposables;
+    private final TriMeshDataCache triMeshDataCache;
 
 
+    // the bodies get no debug models, the physics view creates them when it is shown (see PhysicsDebugModels)
+    // so the factory needs no GL context
     public PhysicsBodyFactory(PhysicsWorld physicsWorld) {
         this.physicsWorld = physicsWorld;
         massInfo = OdeHelper.createMass();
         position = new Vector3();
         q = new Quaternion();
-        modelBuilder = new ModelBuilder();
-        material = new Material(ColorAttribute.createDiffuse(Color.WHITE));
-        disposables = new Array<>();
+        triMeshDataCache = new TriMeshDataCache();
+    }
+
+    // forget the shared trimesh data, to be called after the physics world was reset
+    public void reset() {
+        triMeshDataCache.clear();
     }
 
     public PhysicsBody createBody( ModelInstance collisionInstance, CollisionShapeType shapeType, boolean isStatic ) {
+        physicsWorld.waitForSteps();      // with a physics thread, the space cannot change while it is stepping
         BoundingBox bbox = new BoundingBox();
         Node node = collisionInstance.nodes.first();
         node.calculateBoundingBox(bbox, false); // bounding box without the transform
@@ -60,10 +51,11 @@ public class PhysicsBodyFactory implements Disposable {
         float d = bbox.getDepth();
 
         DGeom geom;
-        ModelInstance instance;
-        float diameter = 0;
-        float radius = 0;
+        float diameter;
+        float radius;
         float len;
+        Mesh mesh = null;
+        TriMeshDataCache.Entry triMesh = null;
 
         switch(shapeType) {
             case BOX:
@@ -91,10 +83,11 @@ public class PhysicsBodyFactory implements Disposable {
                 massInfo.setCylinder(1, 2, radius, len);
                 break;
             case MESH:
-                // create a TriMesh from the provided modelInstance
-                DTriMeshData triData = OdeHelper.createTriMeshData();
-                fillTriData(triData, collisionInstance);
-                geom = OdeHelper.createTriMesh(physicsWorld.space, triData, null, null, null);
+                // create a TriMesh from the mesh of the provided modelInstance, the trimesh data is shared by all
+                // instances of this mesh
+                mesh = collisionInstance.nodes.first().parts.first().meshPart.mesh;
+                triMesh = triMeshDataCache.obtain(mesh);
+                geom = OdeHelper.createTriMesh(physicsWorld.space, triMesh.triData, null, null, null);
                 massInfo.setBox(1, w, h, d);
                 break;
 
@@ -126,109 +119,20 @@ public class PhysicsBodyFactory implements Disposable {
             }
         }
 
-
-        // create a debug model matching the collision geom shape
-        modelBuilder.begin();
-        MeshPartBuilder meshBuilder;
-        meshBuilder = modelBuilder.part("part", GL20.GL_LINES, VertexAttributes.Usage.Position , material);
-        switch(shapeType) {
-            case BOX:
-                BoxShapeBuilder.build(meshBuilder, w, h, d);
-                break;
-            case SPHERE:
-                SphereShapeBuilder.build(meshBuilder, diameter, diameter, diameter , 8, 8);
-                break;
-            case CAPSULE:
-                CapsuleShapeBuilder.build(meshBuilder, radius, h, 12);
-                break;
-            case CYLINDER:
-                CylinderShapeBuilder.build(meshBuilder, diameter, h, diameter, 12);
-                break;
-            case MESH:
-                buildLineMesh(meshBuilder, collisionInstance);
-                break;
-        }
-        Model modelShape = modelBuilder.end();
-        disposables.add(modelShape);
-        instance = new ModelInstance(modelShape, Vector3.Zero);
-
-        PhysicsBody body = new PhysicsBody(geom, instance);
+        PhysicsBody body = new PhysicsBody(physicsWorld, geom, shapeType, w, h, d, mesh);
+        body.triMesh = triMesh;
 
         // copy position and orientation from modelInstance to body
         collisionInstance.transform.getTranslation(position);
         collisionInstance.transform.getRotation(q);
         body.setPosition(position);
         body.setOrientation(q);
+        physicsWorld.addBody(body);
         return body;
     }
 
-    // create a wire frame mesh of the collision model instance
-    private void buildLineMesh(MeshPartBuilder meshBuilder, ModelInstance instance) {
-        Mesh mesh = instance.nodes.first().parts.first().meshPart.mesh;
-
-        int numVertices = mesh.getNumVertices();
-        int numIndices = mesh.getNumIndices();
-        int stride = mesh.getVertexSize()/4;        // floats per vertex in mesh, e.g. for position, normal, textureCoordinate, etc.
-
-        float[] origVertices = new float[numVertices*stride];
-        short[] origIndices = new short[numIndices];
-        // find offset of position floats per vertex, they are not necessarily the first 3 floats
-        int posOffset = mesh.getVertexAttributes().findByUsage(VertexAttributes.Usage.Position).offset / 4;
-
-        mesh.getVertices(origVertices);
-        mesh.getIndices(origIndices);
-
-        meshBuilder.ensureVertices(numVertices);
-        for(int v = 0; v < numVertices; v++) {
-            float x = origVertices[stride*v+posOffset];
-            float y = origVertices[stride*v+1+posOffset];
-            float z = origVertices[stride*v+2+posOffset];
-            meshBuilder.vertex(x, y, z);
-        }
-        meshBuilder.ensureTriangleIndices(numIndices/3);
-        for(int i = 0; i < numIndices; i+=3) {
-            meshBuilder.triangle(origIndices[i], origIndices[i+1], origIndices[i+2]);
-        }
-    }
-
-
-    // convert a libGDX mesh to ODE TriMeshData
-    private void fillTriData(DTriMeshData triData, ModelInstance instance ) {
-        Mesh mesh = instance.nodes.first().parts.first().meshPart.mesh;
-
-        int numVertices = mesh.getNumVertices();
-        int numIndices = mesh.getNumIndices();
-        int stride = mesh.getVertexSize()/4;        // floats per vertex in mesh, e.g. for position, normal, textureCoordinate, etc.
-
-        float[] origVertices = new float[numVertices*stride];
-        short[] origIndices = new short[numIndices];
-        // find offset of position floats per vertex, they are not necessarily the first 3 floats
-        int posOffset = mesh.getVertexAttributes().findByUsage(VertexAttributes.Usage.Position).offset / 4;
-
-        mesh.getVertices(origVertices);
-        mesh.getIndices(origIndices);
-
-        // data for the trimesh
-        float[] vertices = new float[3*numVertices];
-        int[] indices = new int[numIndices];
-
-        for(int v = 0; v < numVertices; v++) {
-            // x, y, z
-            vertices[3*v] = origVertices[stride*v+posOffset];
-            vertices[3*v+1] = origVertices[stride*v+1+posOffset];
-            vertices[3*v+2] = origVertices[stride*v+2+posOffset];
-        }
-        for(int i = 0; i < numIndices; i++)         // convert shorts to ints
-            indices[i] = origIndices[i];
-
-        triData.build(vertices, indices);
-        triData.preprocess();
-    }
-
-
     @Override
     public void dispose() {
-        for(Disposable d : disposables)
-            d.dispose();
+        triMeshDataCache.dispose();
     }
 }
@@ -0,0 +1,57 @@
+package com.monstrous.tut3d.physics;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.github.antzGames.gdx.ode4j.ode.DBody;
+
+
+// changes to rigid bodies made by the game while the physics thread is stepping, see PhysicsWorld
+// they are applied in order once the step is finished, i.e. before the next step. Only the render thread touches the queue.
+// The arguments are kept in a flat array, 6 values per command.
+class PhysicsCommands {
+    static final int FORCE = 0;             // x, y, z
+    static final int FORCE_AT_POS = 1;      // x, y, z, px, py, pz
+    static final int TORQUE = 2;            // x, y, z
+    static final int GRAVITY_MODE = 3;      // 1 or 0
+
+    private final IntArray types = new IntArray();
+    private final Array<PhysicsBody> bodies = new Array<>();
+    private final FloatArray values = new FloatArray();
+
+    void add( int type, PhysicsBody body, float x, float y, float z, float px, float py, float pz ) {
+        types.add(type);
+        bodies.add(body);
+        values.add(x, y, z);
+        values.add(px, py, pz);
+    }
+
+    void apply() {
+        for(int i = 0; i < types.size; i++) {
+            DBody rigidBody = bodies.get(i).geom.getBody();
+            float[] v = values.items;
+            int k = 6*i;
+            switch(types.get(i)) {
+                case FORCE:
+                    rigidBody.addForce(v[k], v[k+1], v[k+2]);
+                    break;
+                case FORCE_AT_POS:
+                    rigidBody.addForceAtPos(v[k], v[k+1], v[k+2], v[k+3], v[k+4], v[k+5]);
+                    break;
+                case TORQUE:
+                    rigidBody.addTorque(v[k], v[k+1], v[k+2]);
+                    break;
+                case GRAVITY_MODE:
+                    rigidBody.setGravityMode(v[k] != 0);
+                    break;
+            }
+        }
+        clear();
+    }
+
+    void clear() {
+        types.clear();
+        bodies.clear();
+        values.clear();
+    }
+}
@@ -0,0 +1,121 @@
+package com.monstrous.tut3d.physics;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.utils.MeshBuilder;
+import com.badlogic.gdx.graphics.g3d.utils.MeshPartBuilder;
+import com.badlogic.gdx.graphics.g3d.utils.ModelBuilder;
+import com.badlogic.gdx.graphics.g3d.utils.shapebuilders.BoxShapeBuilder;
+import com.badlogic.gdx.graphics.g3d.utils.shapebuilders.CapsuleShapeBuilder;
+import com.badlogic.gdx.graphics.g3d.utils.shapebuilders.CylinderShapeBuilder;
+import com.badlogic.gdx.graphics.g3d.utils.shapebuilders.SphereShapeBuilder;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.monstrous.tut3d.MeshExtractor;
+
+
+// wire frame models of the collision shapes for the physics view
+// they are built on first use, i.e. only when the physics view is shown, and shared by all bodies with the same shape:
+// keyed by shape type and size, or by mesh for a MESH shape. So the number of models is bounded by the number of
+// different shapes in the level, however many projectiles are fired.
+public class PhysicsDebugModels implements Disposable {
+
+    private final ModelBuilder modelBuilder;
+    private final Material material;
+    private final ObjectMap<Object, Model> models;      // key is a String or, for MESH shapes, the collision Mesh
+
+    public PhysicsDebugModels() {
+        modelBuilder = new ModelBuilder();
+        material = new Material(ColorAttribute.createDiffuse(Color.WHITE));
+        models = new ObjectMap<>();
+    }
+
+    // a new instance of the debug model matching the collision geom shape, so that each body can have its own transform and colour
+    public ModelInstance createInstance( PhysicsBody body ) {
+        Object key = body.shapeType == CollisionShapeType.MESH ? body.collisionMesh : body.shapeType + " " + body.size;
+        Model model = models.get(key);
+        if(model == null) {
+            model = buildModel(body);
+            models.put(key, model);
+        }
+        return new ModelInstance(model, Vector3.Zero);
+    }
+
+    public int getNumModels() {
+        return models.size;
+    }
+
+    private Model buildModel( PhysicsBody body ) {
+        float w = body.size.x;
+        float h = body.size.y;
+        float d = body.size.z;
+        float diameter;
+        modelBuilder.begin();
+        MeshPartBuilder meshBuilder;
+        meshBuilder = modelBuilder.part("part", GL20.GL_LINES, VertexAttributes.Usage.Position , material);
+        switch(body.shapeType) {
+            case BOX:
+                BoxShapeBuilder.build(meshBuilder, w, h, d);
+                break;
+            case SPHERE:
+                diameter = Math.max(Math.max(w, d), h);
+                SphereShapeBuilder.build(meshBuilder, diameter, diameter, diameter , 8, 8);
+                break;
+            case CAPSULE:
+                diameter = Math.max(w, d);
+                CapsuleShapeBuilder.build(meshBuilder, diameter/2f, h, 12);
+                break;
+            case CYLINDER:
+                diameter = Math.max(w, d);
+                CylinderShapeBuilder.build(meshBuilder, diameter, h, diameter, 12);
+                break;
+            case MESH:
+                buildLineMesh(meshBuilder, body.collisionMesh);
+                break;
+        }
+        return modelBuilder.end();
+    }
+
+    // create a wire frame mesh of the collision mesh
+    // a mesh part can only address 64k vertices, a larger mesh is split over several parts with duplicated vertices
+    private void buildLineMesh(MeshPartBuilder meshBuilder, Mesh mesh) {
+        float[] positions = MeshExtractor.getPositions(mesh);
+        int[] indices = MeshExtractor.getIndices(mesh);
+        int numVertices = positions.length/3;
+        int numIndices = indices.length;
+
+        if(numVertices <= MeshBuilder.MAX_VERTICES) {
+            meshBuilder.ensureVertices(numVertices);
+            for(int v = 0; v < numVertices; v++)
+                meshBuilder.vertex(positions[3*v], positions[3*v+1], positions[3*v+2]);
+            meshBuilder.ensureTriangleIndices(numIndices/3);
+            for(int i = 0; i < numIndices; i+=3)
+                meshBuilder.triangle((short)indices[i], (short)indices[i+1], (short)indices[i+2]);     // unsigned 16 bit
+            return;
+        }
+
+        int trianglesPerPart = MeshBuilder.MAX_VERTICES/3;
+        for(int i = 0; i < numIndices; i+=3) {
+            if(i > 0 && (i/3) % trianglesPerPart == 0)
+                meshBuilder = modelBuilder.part("part", GL20.GL_LINES, VertexAttributes.Usage.Position , material);
+            short v0 = meshBuilder.vertex(positions[3*indices[i]], positions[3*indices[i]+1], positions[3*indices[i]+2]);
+            short v1 = meshBuilder.vertex(positions[3*indices[i+1]], positions[3*indices[i+1]+1], positions[3*indices[i+1]+2]);
+            short v2 = meshBuilder.vertex(positions[3*indices[i+2]], positions[3*indices[i+2]+1], positions[3*indices[i+2]+2]);
+            meshBuilder.triangle(v0, v1, v2);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        for(Model model : models.values())
+            model.dispose();
+        models.clear();
+    }
+}
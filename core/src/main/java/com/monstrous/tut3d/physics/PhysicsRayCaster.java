@@ -20,6 +20,7 @@ public class PhysicsRayCaster implements Disposable {
     }
 
     public boolean isGrounded(GameObject player, Vector3 playerPos, float rayLength, Vector3 groundNormal ) {
+        physicsWorld.waitForSteps();
         this.player = player;
         groundRay.setLength(rayLength);
         groundRay.set(playerPos.x, playerPos.y, playerPos.z, 0, -1, 0); // point ray downwards
@@ -78,6 +79,7 @@ public class PhysicsRayCaster implements Disposable {
     // use ray casting to see if cross-hair is over a target game object
     //
     public boolean findTarget(Vector3 playerPos, Vector3 viewDir, HitPoint hitPoint) {
+        physicsWorld.waitForSteps();
         shootRay.setLength(100);    // shooting distance
         shootRay.set(playerPos.x, playerPos.y, playerPos.z, viewDir.x, viewDir.y, viewDir.z); // point ray in viewing direction, starting at player's centre
 
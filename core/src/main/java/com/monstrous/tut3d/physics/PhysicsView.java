@@ -18,10 +18,12 @@ public class PhysicsView implements Disposable {
 
     private final ModelBatch modelBatch;
     private final World world;      // reference
+    private final PhysicsDebugModels debugModels;
 
     public PhysicsView(World world) {
         this.world = world;
         modelBatch = new ModelBatch();
+        debugModels = new PhysicsDebugModels();
     }
 
     public void render( Camera cam ) {
@@ -39,13 +41,15 @@ public class PhysicsView implements Disposable {
         // move & orient debug modelInstance in line with geom
         if(body == null)
             return;
+        if(body.debugInstance == null)
+            body.debugInstance = debugModels.createInstance(body);
 
         body.debugInstance.transform.set(body.getPosition(), body.getBodyOrientation());
 
         // use different colour for static/sleeping/active objects and for active ones
         Color color = COLOR_STATIC;
         if (body.geom.getBody() != null) {
-            if (body.geom.getBody().isEnabled())
+            if (body.isEnabled())
                 color = COLOR_ACTIVE;
             else
                 color = COLOR_SLEEPING;
@@ -58,5 +62,6 @@ public class PhysicsView implements Disposable {
     @Override
     public void dispose() {
         modelBatch.dispose();
+        debugModels.dispose();
     }
 }
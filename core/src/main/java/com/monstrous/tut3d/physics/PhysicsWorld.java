@@ -1,6 +1,8 @@
 package com.monstrous.tut3d.physics;
 
+import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
 import com.github.antzGames.gdx.ode4j.ode.*;
 import com.monstrous.tut3d.GameObject;
@@ -12,9 +14,17 @@ import static com.github.antzGames.gdx.ode4j.ode.OdeConstants.*;
 
 // World of rigid body dynamics and collisions
 //
+// With Settings.physicsThread the steps run on a physics thread, overlapping with the rest of the frame: update() waits
+// for the steps started in the previous frame and starts the steps for this frame. Meanwhile, the game reads the bodies
+// from a snapshot of the last finished steps (double-buffered, see PhysicsBody) and its forces are queued until the
+// steps are finished (see PhysicsCommands). Anything else that touches ODE, e.g. spawning or destroying a body or casting
+// a ray, first waits for the running steps with waitForSteps(). The collisions are recorded on the physics thread.
+// The results of the steps, i.e. the new snapshot and the collisions, are only handed to the game at the start of the
+// next update(), so that the game sees the same snapshot for a whole frame and its objects don't change halfway.
 public class PhysicsWorld implements Disposable {
 
-    static final float TIME_STEP = 0.025f;  // fixed physics time step
+    private final float timeStep;           // fixed physics time step, see Settings.physicsRate
+    static final int SNAPSHOT_SLOTS = 2;
 
     DWorld world;
     public DSpace space;
@@ -22,8 +32,26 @@ public class PhysicsWorld implements Disposable {
     private final World gameWorld;
     private float timeElapsed;
 
+    final boolean threaded;                 // steps on the physics thread
+    int front;                              // snapshot slot for the game, the physics thread writes the other one
+    final PhysicsCommands commands;
+    private final Array<PhysicsBody> dynamicBodies;      // to take snapshots of
+    private final Array<GameObject> collisions;         // pairs of colliding objects recorded on the physics thread
+    private final Object lock = new Object();
+    private Thread thread;                  // started on first update
+    private boolean stepping;               // steps may be running on the physics thread, only used by the render thread
+    private boolean pending;                // the results of the last steps are not handed to the game yet
+    private int stepsToRun;                 // guarded by lock, back to 0 when the steps are done
+    private float shownTimeElapsed;         // time left over after the steps in the snapshot for the game
+    private boolean running;                // guarded by lock
+
     public PhysicsWorld(World gameWorld) {
         this.gameWorld = gameWorld;
+        timeStep = 1f / Settings.physicsRate;
+        threaded = Settings.physicsThread && Gdx.app.getType() != Application.ApplicationType.WebGL;    // no threads on the web
+        commands = new PhysicsCommands();
+        dynamicBodies = new Array<>();
+        collisions = new Array<>();
         OdeHelper.initODE2(0);
         Gdx.app.log("ODE version", OdeHelper.getVersion());
         Gdx.app.log("ODE config", OdeHelper.getConfiguration());
@@ -34,6 +62,11 @@ public class PhysicsWorld implements Disposable {
 
     // reset world, note this invalidates (orphans) all rigid bodies and geoms so should be used in combination with deleting all game objects
     public void reset() {
+        waitForSteps();
+        pending = false;
+        commands.clear();
+        collisions.clear();
+        dynamicBodies.clear();
         if(world != null)
             world.destroy();
         if(space != null)
@@ -55,22 +88,141 @@ public class PhysicsWorld implements Disposable {
         world.setAutoDisableTime(2);
 
         timeElapsed = 0;
+        shownTimeElapsed = 0;
     }
 
     // update the physics
     // time step of quickStep() needs to be fixed size
     //
     public void update(float deltaTime) {
+        shownTimeElapsed = timeElapsed;     // with a physics thread, the snapshot shown during this frame is the state after the last update
         timeElapsed += deltaTime;
-        while(timeElapsed > TIME_STEP) {
+        int numSteps = 0;
+        while(timeElapsed > timeStep) {
+            numSteps++;
+            timeElapsed -= timeStep;
+        }
+        if(!threaded) {
+            step(numSteps);
+            return;
+        }
+        finishStep();
+        if(numSteps == 0)
+            return;
+        if(thread == null)
+            startThread();
+        synchronized (lock) {
+            stepsToRun = numSteps;
+            lock.notifyAll();
+        }
+        stepping = true;
+        pending = true;
+    }
+
+    private void step( int numSteps ) {
+        for(int i = 0; i < numSteps; i++) {
+            if(Settings.interpolatePhysics) {
+                for(PhysicsBody body : dynamicBodies)
+                    body.storePrevious();
+            }
             space.collide(null, nearCallback);
-            world.quickStep(TIME_STEP);
+            world.quickStep(timeStep);
             contactGroup.empty();
+        }
+    }
+
+    // fraction of a time step that has passed since the last step, to render the bodies between their previous and
+    // current pose. The rendering lags up to one step behind the simulation.
+    // With a physics thread the game sees the state after the previous update, so use the time that was left over then:
+    // the rendering lags one more frame, the same as the snapshot itself.
+    public float getInterpolationAlpha() {
+        return (threaded ? shownTimeElapsed : timeElapsed) / timeStep;
+    }
+
+    // wait until the running steps are finished and show their result to the game: switch snapshots and report the
+    // collisions. Only called from update(), so not while the game is iterating over its objects.
+    private void finishStep() {
+        if(!pending)
+            return;
+        waitForSteps();
+        pending = false;
+        front = 1 - front;
+        for(int i = 0; i < collisions.size; i += 2) {
+            GameObject go1 = collisions.get(i);
+            GameObject go2 = collisions.get(i+1);
+            if(!go1.isDead() && !go2.isDead())      // e.g. a pickup collected in an earlier step
+                gameWorld.onCollision(go1, go2);
+        }
+        collisions.clear();
+    }
+
+    boolean isStepping() {
+        return stepping;
+    }
+
+    // wait until the running steps are finished and apply the queued forces. After this the game can use ODE directly
+    // until the next update, but it keeps reading the bodies from the same snapshot until then.
+    public void waitForSteps() {
+        if(!stepping)
+            return;
+        boolean interrupted = false;
+        synchronized (lock) {
+            while(stepsToRun > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;     // the physics thread is still using ODE, keep waiting
+                }
+            }
+        }
+        if(interrupted)
+            Thread.currentThread().interrupt();
+        stepping = false;
+        commands.apply();
+    }
 
-            timeElapsed -= TIME_STEP;
+    private void startThread() {
+        running = true;
+        thread = new Thread(this::runSteps, "physics");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void runSteps() {
+        while(true) {
+            int numSteps;
+            synchronized (lock) {
+                while(running && stepsToRun == 0) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if(!running)
+                    return;
+                numSteps = stepsToRun;
+            }
+            step(numSteps);
+            int back = 1 - front;
+            for(PhysicsBody body : dynamicBodies)
+                body.takeSnapshot(back);
+            synchronized (lock) {
+                stepsToRun = 0;
+                lock.notifyAll();
+            }
         }
     }
 
+    void addBody( PhysicsBody body ) {
+        if(body.geom.getBody() != null)
+            dynamicBodies.add(body);
+    }
+
+    void removeBody( PhysicsBody body ) {
+        dynamicBodies.removeValue(body, true);
+    }
+
     private final DGeom.DNearCallback nearCallback = new DGeom.DNearCallback() {
 
         @Override
@@ -85,7 +237,12 @@ public class PhysicsWorld implements Disposable {
 
             int n = OdeHelper.collide(o1, o2, N, contacts.getGeomBuffer());
             if (n > 0) {
-                gameWorld.onCollision((GameObject)o1.getData(), (GameObject)o2.getData());        // callback to world
+                if(gameWorld != null) {     // null for a physics world on its own, e.g. in the benchmarks
+                    if(threaded)            // the game world is not thread safe, report the collision when the steps are finished
+                        collisions.add((GameObject)o1.getData(), (GameObject)o2.getData());
+                    else
+                        gameWorld.onCollision((GameObject)o1.getData(), (GameObject)o2.getData());        // callback to world
+                }
 
                 for (int i = 0; i < n; i++) {
                     DContact contact = contacts.get(i);
@@ -108,6 +265,14 @@ public class PhysicsWorld implements Disposable {
 
     @Override
     public void dispose() {
+        waitForSteps();
+        if(thread != null) {
+            synchronized (lock) {
+                running = false;
+                lock.notifyAll();
+            }
+            thread = null;
+        }
         contactGroup.destroy();
         space.destroy();
         world.destroy();
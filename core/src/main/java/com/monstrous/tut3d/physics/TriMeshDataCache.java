@@ -0,0 +1,70 @@
+package com.monstrous.tut3d.physics;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.github.antzGames.gdx.ode4j.ode.DTriMeshData;
+import com.github.antzGames.gdx.ode4j.ode.OdeHelper;
+import com.monstrous.tut3d.MeshExtractor;
+
+
+// preprocessed ODE trimesh data per source mesh, so that the bodies with the same collision mesh (e.g. all the pans
+// thrown by the cooks) share one DTriMeshData instead of each copying the mesh and preprocessing it again.
+// The data is reference counted: it is destroyed when the last geom that uses it is destroyed.
+public class TriMeshDataCache implements Disposable {
+
+    // keyed by identity: the model instances of a node share the meshes of the model
+    private final ObjectMap<Mesh, Entry> entries = new ObjectMap<>();
+
+    public class Entry {
+        public final DTriMeshData triData;
+        private final Mesh mesh;
+        private int refCount;
+
+        Entry( Mesh mesh ) {
+            this.mesh = mesh;
+            triData = OdeHelper.createTriMeshData();
+            triData.build(MeshExtractor.getPositions(mesh), MeshExtractor.getIndices(mesh));
+            triData.preprocess();
+        }
+
+        // to be called after the geom using the data was destroyed
+        public void release() {
+            if(refCount <= 0)        // already destroyed by clear()
+                return;
+            if(--refCount > 0)
+                return;
+            entries.remove(mesh);
+            triData.destroy();
+        }
+    }
+
+    // converts the mesh to ODE trimesh data, unless there is data of this mesh already
+    public Entry obtain( Mesh mesh ) {
+        Entry entry = entries.get(mesh);
+        if(entry == null) {
+            entry = new Entry(mesh);
+            entries.put(mesh, entry);
+        }
+        entry.refCount++;
+        return entry;
+    }
+
+    public int size() {
+        return entries.size;
+    }
+
+    // destroy all the data, e.g. when the physics world is reset, which destroys the geoms but not the bodies
+    public void clear() {
+        for(Entry entry : entries.values()) {
+            entry.refCount = 0;
+            entry.triData.destroy();
+        }
+        entries.clear();
+    }
+
+    @Override
+    public void dispose() {
+        clear();
+    }
+}
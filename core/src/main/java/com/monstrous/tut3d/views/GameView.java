@@ -2,6 +2,7 @@ package com.monstrous.tut3d.views;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.*;
+import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Disposable;
 import com.monstrous.tut3d.Settings;
 import com.monstrous.tut3d.World;
@@ -29,6 +30,7 @@ public class GameView implements Disposable {
     private final boolean isOverlay;
     private float bobAngle;     // angle in the camera bob cycle (radians)
     private final float bobScale;     // scale factor for camera bobbing
+    private final Vector3 playerPosition = new Vector3();
 
     // if the view is an overlay, we don't clear screen on render, only depth buffer
     //
@@ -114,7 +116,7 @@ public class GameView implements Disposable {
 
     public void render(float delta, float speed ) {
         if(!isOverlay)
-            camController.update(world.getPlayer().getPosition(), world.getPlayerController().getViewingDirection());
+            camController.update(world.getPlayer().scene.modelInstance.transform.getTranslation(playerPosition), world.getPlayerController().getViewingDirection());   // where the player is rendered, between physics steps
         else
             cam.position.y = Settings.eyeHeight;
         addHeadBob(delta, speed);
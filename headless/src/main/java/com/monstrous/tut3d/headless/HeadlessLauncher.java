@@ -0,0 +1,24 @@
+package com.monstrous.tut3d.headless;
+
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+
+/** Launches the game simulation without graphics or audio, as fast as possible.
+ * Arguments (optional): number of frames to simulate, time step per frame in seconds. */
+public class HeadlessLauncher {
+    public static void main(String[] args) {
+        int numFrames = args.length > 0 ? Integer.parseInt(args[0]) : 36000;       // 10 minutes of game time
+        float deltaTime = args.length > 1 ? Float.parseFloat(args[1]) : 1/60f;
+        createApplication(numFrames, deltaTime);
+    }
+
+    private static HeadlessApplication createApplication( int numFrames, float deltaTime ) {
+        return new HeadlessApplication(new HeadlessSimulation(numFrames, deltaTime), getDefaultConfiguration());
+    }
+
+    private static HeadlessApplicationConfiguration getDefaultConfiguration() {
+        HeadlessApplicationConfiguration configuration = new HeadlessApplicationConfiguration();
+        configuration.updatesPerSecond = 0;         // uncapped, the simulation uses a fixed time step
+        return configuration;
+    }
+}
@@ -0,0 +1,104 @@
+package com.monstrous.tut3d.headless;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.monstrous.tut3d.Assets;
+import com.monstrous.tut3d.Populator;
+import com.monstrous.tut3d.World;
+import com.monstrous.tut3d.WorldTimings;
+import com.monstrous.tut3d.inputs.InputReplay;
+import com.monstrous.tut3d.inputs.PlayerInput;
+import net.mgsx.gltf.scene3d.scene.SceneModel;
+
+// replays an input recording of the game (see InputRecorder) in a headless world and reports the time per phase of the
+// world update, for repeatable performance traces of a real game session.
+// By default each frame is updated with its recorded delta time, so the replay follows the recorded game, as long as the
+// settings are the same (e.g. the enemies use the flow field, paths found on worker threads can arrive in another frame).
+// A fixed time step only follows the recorded game when that ran at the same frame rate, but can be used to compare
+// runs of recordings made at different frame rates.
+public class HeadlessReplay extends ApplicationAdapter {
+    static final int SLOWEST_FRAMES = 5;
+
+    private final String fileName;
+    private FileHandle file;
+    private final float deltaTime;          // 0 to use the recorded delta times
+    private SceneModel sceneModel;
+    private World world;
+    private InputReplay replay;
+    private final PlayerInput input = new PlayerInput();
+    private int frame;
+    private final int[] slowestFrames = new int[SLOWEST_FRAMES];
+    private final long[] slowestNanos = new long[SLOWEST_FRAMES];
+    private final String[] slowestPhases = new String[SLOWEST_FRAMES];
+    private long startTime;
+
+    public HeadlessReplay( String fileName, float deltaTime ) {
+        this.fileName = fileName;
+        this.deltaTime = deltaTime;
+    }
+
+    @Override
+    public void create() {
+        sceneModel = Assets.loadHeadlessScene();
+        world = new World(sceneModel, true);
+        Populator.populate(world);      // the recording starts from a freshly populated level
+        file = Gdx.files.local(fileName);
+        replay = new InputReplay(file);
+        startTime = System.nanoTime();
+    }
+
+    @Override
+    public void render() {
+        if(!replay.nextFrame(input)) {
+            report();
+            Gdx.app.exit();
+            return;
+        }
+        world.getPlayerController().applyInput(input);
+        if(input.restart)
+            Populator.populate(world);
+        world.update(deltaTime > 0 ? deltaTime : input.deltaTime);
+        frame++;
+
+        long frameNanos = world.timings.getFrameNanos();
+        int slot = SLOWEST_FRAMES - 1;
+        if(frameNanos <= slowestNanos[slot])
+            return;
+        while(slot > 0 && frameNanos > slowestNanos[slot-1]) {     // keep the list sorted, slowest first
+            slowestFrames[slot] = slowestFrames[slot-1];
+            slowestNanos[slot] = slowestNanos[slot-1];
+            slowestPhases[slot] = slowestPhases[slot-1];
+            slot--;
+        }
+        slowestFrames[slot] = frame;
+        slowestNanos[slot] = frameNanos;
+        slowestPhases[slot] = describeFrame(world.timings);
+    }
+
+    private static String describeFrame( WorldTimings timings ) {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < WorldTimings.NAMES.length; i++) {
+            if(i > 0)
+                sb.append(", ");
+            sb.append(WorldTimings.NAMES[i]).append(' ').append(timings.frameNanos[i] / 1000).append(" us");
+        }
+        return sb.toString();
+    }
+
+    private void report() {
+        float seconds = (System.nanoTime() - startTime) / 1e9f;
+        Gdx.app.log("Replay", file.name() + ": " + frame + " frames in " + seconds + " s, player "
+            + (world.getPlayer().isDead() ? "died" : "alive at " + world.getPlayer().getPosition()) + ", enemies left: " + world.stats.numEnemies
+            + ", coins: " + world.stats.coinsCollected + "/" + world.stats.numCoins);
+        Gdx.app.log("Time per frame", world.timings.toString());
+        for(int i = 0; i < SLOWEST_FRAMES && slowestNanos[i] > 0; i++)
+            Gdx.app.log("Slow frame " + slowestFrames[i], slowestNanos[i] / 1000 + " us: " + slowestPhases[i]);
+    }
+
+    @Override
+    public void dispose() {
+        world.dispose();
+        sceneModel.dispose();
+    }
+}
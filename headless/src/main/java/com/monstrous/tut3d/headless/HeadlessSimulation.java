@@ -0,0 +1,67 @@
+package com.monstrous.tut3d.headless;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.monstrous.tut3d.Assets;
+import com.monstrous.tut3d.Populator;
+import com.monstrous.tut3d.World;
+import net.mgsx.gltf.scene3d.scene.SceneModel;
+
+// runs the world in headless mode with a fixed time step: physics, enemy AI and path finding, but no rendering or sound
+// when a game ends (the player died or the level is complete) the level is populated again, until the number of frames
+// has been simulated. Nobody controls the player, unless a bot is hooked up to the player controller.
+public class HeadlessSimulation extends ApplicationAdapter {
+    private final int numFrames;
+    private final float deltaTime;
+    private SceneModel sceneModel;
+    private World world;
+    private int frame;
+    private int games;
+    private float gameStartTime;
+    private long startTime;
+    private long updateNanos;
+
+    public HeadlessSimulation( int numFrames, float deltaTime ) {
+        this.numFrames = numFrames;
+        this.deltaTime = deltaTime;
+    }
+
+    @Override
+    public void create() {
+        sceneModel = Assets.loadHeadlessScene();
+        world = new World(sceneModel, true);
+        Populator.populate(world);
+        startTime = System.nanoTime();
+    }
+
+    @Override
+    public void render() {
+        long start = System.nanoTime();
+        world.update(deltaTime);
+        updateNanos += System.nanoTime() - start;
+        frame++;
+
+        boolean gameOver = world.getPlayer().isDead() || world.stats.levelComplete;
+        if(gameOver || frame == numFrames) {
+            games++;
+            Gdx.app.log("Game " + games, (world.getPlayer().isDead() ? "player died" : world.stats.levelComplete ? "level complete" : "stopped")
+                + " after " + (int)(frame * deltaTime - gameStartTime) + " s, enemies left: " + world.stats.numEnemies
+                + ", coins: " + world.stats.coinsCollected + "/" + world.stats.numCoins);
+            gameStartTime = frame * deltaTime;
+            if(frame < numFrames)
+                Populator.populate(world);
+        }
+        if(frame == numFrames) {
+            float seconds = (System.nanoTime() - startTime) / 1e9f;
+            Gdx.app.log("Headless simulation", frame + " frames (" + (int)(frame * deltaTime) + " s game time) in " + seconds
+                + " s, " + (int)(frame / seconds) + " frames/s, update " + updateNanos / 1000 / frame + " us/frame");
+            Gdx.app.exit();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        world.dispose();
+        sceneModel.dispose();
+    }
+}
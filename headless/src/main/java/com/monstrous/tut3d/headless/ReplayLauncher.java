@@ -0,0 +1,22 @@
+package com.monstrous.tut3d.headless;
+
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.monstrous.tut3d.Settings;
+
+/** Replays an input recording of the game without graphics or audio, as fast as possible, and reports the timings.
+ * Arguments (optional): recording file (local path), time step per frame in seconds or 0 for the recorded delta times.
+ * By default the recorded delta times are used, so that the replay follows the recorded session. */
+public class ReplayLauncher {
+    public static void main(String[] args) {
+        String fileName = args.length > 0 ? args[0] : Settings.INPUT_RECORDING_FILE;
+        float deltaTime = args.length > 1 ? Float.parseFloat(args[1]) : 0;
+        createApplication(fileName, deltaTime);
+    }
+
+    private static HeadlessApplication createApplication( String fileName, float deltaTime ) {
+        HeadlessApplicationConfiguration configuration = new HeadlessApplicationConfiguration();
+        configuration.updatesPerSecond = 0;         // uncapped, the replay sets the time step
+        return new HeadlessApplication(new HeadlessReplay(fileName, deltaTime), configuration);
+    }
+}
@@ -0,0 +1,269 @@
+package com.monstrous.tut3d.navgen;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+// voxel grid of the level geometry: per column (x,z cell) a sorted list of solid spans
+// a span is a vertical run of voxels covered by triangles. The top of a span is walkable if the triangle that made
+// it is not too steep.
+// The grid is split into square tiles that are rasterized in parallel on a fork-join pool. A tile only writes to its own
+// columns, so the tasks do not need to synchronize. Each tile keeps its spans in its own arrays.
+
+public class Heightfield {
+    public static int TILE_CELLS = 32;          // tile width in cells
+    public static int MERGE_THRESHOLD = 1;      // voxels, spans ending this close merge their walkable flag
+
+    public final float cellSize;                // voxel size in x and z
+    public final float cellHeight;              // voxel size in y
+    public final float minX, minY, minZ;
+    public final int width, depth;              // number of columns in x and z
+    public final int tilesX, tilesZ;
+    final Tile[] tiles;
+
+    // spans of the columns of one tile as linked lists, sorted from bottom to top
+    static class Tile {
+        final int x0, z0, x1, z1;               // column range, exclusive end
+        final int[] head;                       // first span per column, -1 for none
+        final IntArray min = new IntArray();
+        final IntArray max = new IntArray();
+        final IntArray walkable = new IntArray();   // 1 if the top of the span can be walked on
+        final IntArray next = new IntArray();
+        int free = -1;                          // list of spans that were merged away
+        final IntArray triangles = new IntArray();  // triangles that overlap the tile
+
+        Tile( int x0, int z0, int x1, int z1 ) {
+            this.x0 = x0;
+            this.z0 = z0;
+            this.x1 = x1;
+            this.z1 = z1;
+            head = new int[(x1 - x0) * (z1 - z0)];
+            java.util.Arrays.fill(head, -1);
+        }
+
+        int column( int x, int z ) {
+            return (x - x0) + (x1 - x0) * (z - z0);
+        }
+
+        // add a span to a column, merging it with the spans it overlaps
+        void addSpan( int x, int z, int smin, int smax, boolean isWalkable ) {
+            int column = column(x, z);
+            int area = isWalkable ? 1 : 0;
+            int prev = -1;
+            int cur = head[column];
+            while(cur != -1) {
+                if(min.get(cur) > smax)
+                    break;
+                if(max.get(cur) < smin) {
+                    prev = cur;
+                    cur = next.get(cur);
+                    continue;
+                }
+                // overlap: merge the current span into the new one
+                if(min.get(cur) < smin)
+                    smin = min.get(cur);
+                if(max.get(cur) > smax)
+                    smax = max.get(cur);
+                if(Math.abs(smax - max.get(cur)) <= MERGE_THRESHOLD)
+                    area = Math.max(area, walkable.get(cur));
+                int following = next.get(cur);
+                next.set(cur, free);
+                free = cur;
+                if(prev == -1)
+                    head[column] = following;
+                else
+                    next.set(prev, following);
+                cur = following;
+            }
+            int span;
+            if(free != -1) {
+                span = free;
+                free = next.get(span);
+                min.set(span, smin);
+                max.set(span, smax);
+                walkable.set(span, area);
+            }
+            else {
+                span = min.size;
+                min.add(smin);
+                max.add(smax);
+                walkable.add(area);
+                next.add(-1);
+            }
+            if(prev == -1) {
+                next.set(span, head[column]);
+                head[column] = span;
+            }
+            else {
+                next.set(span, next.get(prev));
+                next.set(prev, span);
+            }
+        }
+    }
+
+    // bounds: min x,y,z and max x,y,z of the geometry
+    public Heightfield( float[] bounds, float cellSize, float cellHeight ) {
+        this.cellSize = cellSize;
+        this.cellHeight = cellHeight;
+        minX = bounds[0];
+        minY = bounds[1];
+        minZ = bounds[2];
+        width = Math.max(1, (int)Math.ceil((bounds[3] - minX) / cellSize));
+        depth = Math.max(1, (int)Math.ceil((bounds[5] - minZ) / cellSize));
+        tilesX = (width + TILE_CELLS - 1) / TILE_CELLS;
+        tilesZ = (depth + TILE_CELLS - 1) / TILE_CELLS;
+        tiles = new Tile[tilesX * tilesZ];
+        for(int tz = 0; tz < tilesZ; tz++) {
+            for(int tx = 0; tx < tilesX; tx++) {
+                int x0 = tx * TILE_CELLS;
+                int z0 = tz * TILE_CELLS;
+                tiles[tx + tilesX * tz] = new Tile(x0, z0, Math.min(width, x0 + TILE_CELLS), Math.min(depth, z0 + TILE_CELLS));
+            }
+        }
+    }
+
+    // rasterize the triangles into the voxel grid using the pool
+    // a triangle is walkable if its normal is less than maxSlope degrees from the vertical
+    public void rasterize( float[] positions, int[] indices, float maxSlope, ForkJoinPool pool ) {
+        float walkableY = (float)Math.cos(Math.toRadians(maxSlope));
+        boolean[] walkable = new boolean[indices.length/3];
+        for(int t = 0; t < walkable.length; t++)
+            walkable[t] = isWalkable(positions, indices, t, walkableY);
+
+        // put each triangle in the tiles it overlaps
+        for(int t = 0; t < indices.length/3; t++) {
+            float x0 = Float.MAX_VALUE, z0 = Float.MAX_VALUE, x1 = -Float.MAX_VALUE, z1 = -Float.MAX_VALUE;
+            for(int k = 0; k < 3; k++) {
+                int v = indices[3*t+k];
+                x0 = Math.min(x0, positions[3*v]);
+                x1 = Math.max(x1, positions[3*v]);
+                z0 = Math.min(z0, positions[3*v+2]);
+                z1 = Math.max(z1, positions[3*v+2]);
+            }
+            int tx0 = clamp((int)Math.floor((x0 - minX) / cellSize) / TILE_CELLS, tilesX);
+            int tx1 = clamp((int)Math.floor((x1 - minX) / cellSize) / TILE_CELLS, tilesX);
+            int tz0 = clamp((int)Math.floor((z0 - minZ) / cellSize) / TILE_CELLS, tilesZ);
+            int tz1 = clamp((int)Math.floor((z1 - minZ) / cellSize) / TILE_CELLS, tilesZ);
+            for(int tz = tz0; tz <= tz1; tz++)
+                for(int tx = tx0; tx <= tx1; tx++)
+                    tiles[tx + tilesX * tz].triangles.add(t);
+        }
+
+        pool.invoke(new RasterizeTask(positions, indices, walkable, 0, tiles.length));
+    }
+
+    private static int clamp( int tile, int numTiles ) {
+        return Math.max(0, Math.min(numTiles-1, tile));
+    }
+
+    private static boolean isWalkable( float[] positions, int[] indices, int t, float walkableY ) {
+        int a = 3*indices[3*t], b = 3*indices[3*t+1], c = 3*indices[3*t+2];
+        float ux = positions[b] - positions[a], uy = positions[b+1] - positions[a+1], uz = positions[b+2] - positions[a+2];
+        float vx = positions[c] - positions[a], vy = positions[c+1] - positions[a+1], vz = positions[c+2] - positions[a+2];
+        float nx = uy*vz - uz*vy;
+        float ny = uz*vx - ux*vz;
+        float nz = ux*vy - uy*vx;
+        float length = (float)Math.sqrt(nx*nx + ny*ny + nz*nz);
+        return length > 0 && ny / length >= walkableY;
+    }
+
+    // rasterizes a range of tiles, split in halves until a single tile is left
+    private class RasterizeTask extends RecursiveAction {
+        private final float[] positions;
+        private final int[] indices;
+        private final boolean[] walkable;
+        private final int first, end;
+
+        RasterizeTask( float[] positions, int[] indices, boolean[] walkable, int first, int end ) {
+            this.positions = positions;
+            this.indices = indices;
+            this.walkable = walkable;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if(end - first > 1) {
+                int mid = (first + end) / 2;
+                invokeAll(new RasterizeTask(positions, indices, walkable, first, mid), new RasterizeTask(positions, indices, walkable, mid, end));
+                return;
+            }
+            Tile tile = tiles[first];
+            float[] in = new float[3*7];        // a triangle clipped to a cell has at most 7 corners
+            float[] row = new float[3*7];
+            float[] cell = new float[3*7];
+            float[] tmp = new float[3*7];
+            for(int i = 0; i < tile.triangles.size; i++) {
+                int t = tile.triangles.get(i);
+                for(int k = 0; k < 3; k++)
+                    System.arraycopy(positions, 3*indices[3*t+k], in, 3*k, 3);
+                rasterizeTriangle(tile, in, walkable[t], row, cell, tmp);
+            }
+        }
+
+        // clip the triangle to each row and then to each cell of the tile, the y range of the clipped polygon is the span
+        private void rasterizeTriangle( Tile tile, float[] in, boolean isWalkable, float[] row, float[] cell, float[] tmp ) {
+            float z0 = Math.min(in[2], Math.min(in[5], in[8]));
+            float z1 = Math.max(in[2], Math.max(in[5], in[8]));
+            int cz0 = Math.max(tile.z0, (int)Math.floor((z0 - minZ) / cellSize));
+            int cz1 = Math.min(tile.z1 - 1, (int)Math.floor((z1 - minZ) / cellSize));
+            for(int z = cz0; z <= cz1; z++) {
+                float rowZ = minZ + z * cellSize;
+                int n = clip(in, 3, tmp, 2, rowZ, true);
+                n = clip(tmp, n, row, 2, rowZ + cellSize, false);
+                if(n < 3)
+                    continue;
+                float x0 = Float.MAX_VALUE, x1 = -Float.MAX_VALUE;
+                for(int k = 0; k < n; k++) {
+                    x0 = Math.min(x0, row[3*k]);
+                    x1 = Math.max(x1, row[3*k]);
+                }
+                int cx0 = Math.max(tile.x0, (int)Math.floor((x0 - minX) / cellSize));
+                int cx1 = Math.min(tile.x1 - 1, (int)Math.floor((x1 - minX) / cellSize));
+                for(int x = cx0; x <= cx1; x++) {
+                    float cellX = minX + x * cellSize;
+                    int m = clip(row, n, tmp, 0, cellX, true);
+                    m = clip(tmp, m, cell, 0, cellX + cellSize, false);
+                    if(m < 3)
+                        continue;
+                    float y0 = Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+                    for(int k = 0; k < m; k++) {
+                        y0 = Math.min(y0, cell[3*k+1]);
+                        y1 = Math.max(y1, cell[3*k+1]);
+                    }
+                    int smin = Math.max(0, (int)Math.floor((y0 - minY) / cellHeight));
+                    int smax = Math.max(smin + 1, (int)Math.ceil((y1 - minY) / cellHeight));
+                    tile.addSpan(x, z, smin, smax, isWalkable);
+                }
+            }
+        }
+    }
+
+    // clip a convex polygon against the plane axis = value, keeping the side above (or below) the plane
+    // returns the number of corners of the clipped polygon
+    private static int clip( float[] in, int n, float[] out, int axis, float value, boolean keepAbove ) {
+        int m = 0;
+        for(int i = 0, j = n-1; i < n; j = i, i++) {
+            float di = keepAbove ? in[3*i+axis] - value : value - in[3*i+axis];
+            float dj = keepAbove ? in[3*j+axis] - value : value - in[3*j+axis];
+            if((di >= 0) != (dj >= 0)) {        // the edge crosses the plane
+                float s = dj / (dj - di);
+                for(int k = 0; k < 3; k++)
+                    out[3*m+k] = in[3*j+k] + (in[3*i+k] - in[3*j+k]) * s;
+                m++;
+            }
+            if(di >= 0) {
+                System.arraycopy(in, 3*i, out, 3*m, 3);
+                m++;
+            }
+        }
+        return m;
+    }
+
+    Tile getTile( int x, int z ) {
+        return tiles[(x / TILE_CELLS) + tilesX * (z / TILE_CELLS)];
+    }
+}
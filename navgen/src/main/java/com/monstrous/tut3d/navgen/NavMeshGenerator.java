@@ -0,0 +1,139 @@
+package com.monstrous.tut3d.navgen;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.monstrous.tut3d.GltfMeshReader;
+import com.monstrous.tut3d.Populator;
+import com.monstrous.tut3d.Settings;
+import com.monstrous.tut3d.nav.NavFlowField;
+import com.monstrous.tut3d.nav.NavMesh;
+import com.monstrous.tut3d.nav.NavMeshBuilder;
+import com.monstrous.tut3d.nav.NavMeshFile;
+import com.monstrous.tut3d.nav.NavNode;
+
+import java.util.concurrent.ForkJoinPool;
+
+/** Offline tool to generate a nav mesh from the static collision geometry of a level, instead of modelling it by hand.
+ * The geometry is voxelized, the walkable surface is extracted and triangulated, and the result is written as a nav mesh file.
+ * The file is then read back and checked against the spawn points of the level, see Populator.
+ * By default the file is written where the game looks for it with Settings.useGeneratedNavMesh.
+ * Arguments (optional): gltf file, output file, names of the collision nodes (default: those of Populator).
+ * Paths are relative to the assets folder. */
+public class NavMeshGenerator extends ApplicationAdapter {
+    public static float CELL_SIZE = 0.25f;          // voxel size in x and z (m)
+    public static float CELL_HEIGHT = 0.1f;         // voxel size in y (m)
+    public static float AGENT_HEIGHT = 2.0f;        // head room needed (m)
+    public static float AGENT_RADIUS = 0.5f;        // distance to keep from walls and ledges (m)
+    public static float MAX_CLIMB = 0.5f;           // step height (m)
+    public static float MAX_SLOPE = 45f;            // degrees
+    public static float MIN_REGION_AREA = 2f;       // smaller islands are dropped (m^2)
+    public static float MAX_ERROR = 0.2f;           // maximum height difference between a floor and its triangles (m)
+    public static int MAX_RECTANGLE_CELLS = 24;     // maximum width of a rectangle (cells), keeps the triangles small enough for good paths
+
+    private final String gltfFile;
+    private final String outputFile;
+    private final String[] nodeNames;
+
+    public NavMeshGenerator(String gltfFile, String outputFile, String[] nodeNames) {
+        this.gltfFile = gltfFile;
+        this.outputFile = outputFile;
+        this.nodeNames = nodeNames;
+    }
+
+    public static void main(String[] args) {
+        String gltfFile = args.length > 0 ? args[0] : Settings.GLTF_FILE;
+        String outputFile = args.length > 1 ? args[1] : NavMeshFile.getFileName(gltfFile, NavMeshFile.GENERATED);
+        String[] nodeNames = Populator.getLevelCollisionNodes();
+        if(args.length > 2) {
+            nodeNames = new String[args.length - 2];
+            System.arraycopy(args, 2, nodeNames, 0, nodeNames.length);
+        }
+
+        HeadlessApplicationConfiguration configuration = new HeadlessApplicationConfiguration();
+        configuration.updatesPerSecond = -1;        // we only need create()
+        new HeadlessApplication(new NavMeshGenerator(gltfFile, outputFile, nodeNames), configuration);
+    }
+
+    @Override
+    public void create() {
+        // collect the triangles of the collision nodes in world space
+        GltfMeshReader reader = new GltfMeshReader(Gdx.files.local(gltfFile));
+        FloatArray positions = new FloatArray();
+        IntArray indices = new IntArray();
+        for(String nodeName : nodeNames) {
+            reader.readNode(nodeName, true);
+            int base = positions.size / 3;
+            positions.addAll(reader.positions);
+            for(int index : reader.indices)
+                indices.add(base + index);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool();
+        NavMesh navMesh = generate(positions.toArray(), indices.toArray(), pool);
+        pool.shutdown();
+
+        FileHandle output = Gdx.files.local(outputFile);
+        NavMeshFile.write(navMesh, reader.getSourceHash(), output);
+        Gdx.app.log("Nav mesh generated", output.path() + " (" + output.length() + " bytes)");
+        checkSpawnPoints(NavMeshFile.read(output));
+        Gdx.app.exit();
+    }
+
+    // the enemies must be able to reach the player from where they spawn
+    // throws a GdxRuntimeException if a spawn point is not on the nav mesh or not connected to the player's
+    public static void checkSpawnPoints( NavMesh navMesh ) {
+        NavNode playerNode = navMesh.findNode(Populator.PLAYER_SPAWN, Settings.navHeight);
+        if(playerNode == null)
+            throw new GdxRuntimeException("Player spawn point is not on the nav mesh: " + Populator.PLAYER_SPAWN);
+        NavFlowField field = new NavFlowField(navMesh);
+        field.addSource(playerNode, 0);
+        field.compute();
+        for(Vector3 spawn : Populator.ENEMY_SPAWNS) {
+            NavNode node = navMesh.findNode(spawn, Settings.navHeight);
+            if(node == null)
+                throw new GdxRuntimeException("Enemy spawn point is not on the nav mesh: " + spawn);
+            if(!field.isReachable(node))
+                throw new GdxRuntimeException("Enemy spawn point cannot reach the player spawn point: " + spawn);
+        }
+        Gdx.app.log("Nav mesh generator", "player and " + Populator.ENEMY_SPAWNS.length + " enemy spawn points are connected");
+    }
+
+    // voxelize the triangles, find the walkable surface and triangulate it into a nav mesh
+    public static NavMesh generate( float[] positions, int[] indices, ForkJoinPool pool ) {
+        long start = System.currentTimeMillis();
+        float[] bounds = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+        for(int v = 0; v < positions.length/3; v++) {
+            for(int k = 0; k < 3; k++) {
+                bounds[k] = Math.min(bounds[k], positions[3*v+k]);
+                bounds[3+k] = Math.max(bounds[3+k], positions[3*v+k]);
+            }
+        }
+        Heightfield heightfield = new Heightfield(bounds, CELL_SIZE, CELL_HEIGHT);
+        heightfield.rasterize(positions, indices, MAX_SLOPE, pool);
+        long rasterized = System.currentTimeMillis();
+
+        int agentHeight = (int)Math.ceil(AGENT_HEIGHT / CELL_HEIGHT);
+        int maxClimb = (int)Math.floor(MAX_CLIMB / CELL_HEIGHT);
+        WalkableField field = new WalkableField(heightfield, agentHeight, maxClimb, pool);
+        field.erode((int)Math.ceil(AGENT_RADIUS / CELL_SIZE));
+        field.buildRegions((int)Math.ceil(MIN_REGION_AREA / (CELL_SIZE * CELL_SIZE)));
+        long walkable = System.currentTimeMillis();
+
+        NavMeshTriangulator triangulator = new NavMeshTriangulator(field);
+        triangulator.triangulate(MAX_ERROR, MAX_RECTANGLE_CELLS);
+        long triangulated = System.currentTimeMillis();
+        Gdx.app.log("Nav mesh generator", heightfield.width + " x " + heightfield.depth + " columns, " + field.numSpans + " walkable spans, "
+            + field.numRegions + " regions, " + triangulator.getNumRectangles() + " rectangles, " + triangulator.indices.size/3 + " triangles");
+        Gdx.app.log("Nav mesh generator", "voxelize " + (rasterized - start) + " ms, walkable surface " + (walkable - rasterized)
+            + " ms, triangulate " + (triangulated - walkable) + " ms, threads " + pool.getParallelism());
+
+        return NavMeshBuilder.build(triangulator.positions.toArray(), triangulator.indices.toArray());
+    }
+}
@@ -0,0 +1,246 @@
+package com.monstrous.tut3d.navgen;
+
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+
+
+// turns the walkable field into triangles for NavMeshBuilder
+// The spans of each region are merged into rectangles that are close to planar. Each rectangle becomes a fan of
+// triangles around its centre, with a triangle for each segment of its contour.
+// A contour runs through the corners of the rectangle and through each corner of a neighbouring rectangle that lies on
+// its border, so that two adjacent triangles always share a whole edge (no T-junctions) and get linked.
+// The corners of connected spans are the same vertex, its height is the highest floor around it. So steps within the
+// climb height become slopes, like the proxy geometry that is used for stairs.
+
+public class NavMeshTriangulator {
+
+    private final WalkableField field;
+    private final int[] parent;             // union-find over the 4 corners per span: 0 = (x,z), 1 = (x+1,z), 2 = (x+1,z+1), 3 = (x,z+1)
+    private final float[] cornerHeight;     // per root corner
+    private final boolean[] isRectangleCorner;  // per root corner
+    private final int[] rectangleOf;        // per span, -1 if not assigned yet
+    private final IntArray rectangleCells;  // spans per rectangle, row by row
+    private final IntArray rectangleStart;  // offset into rectangleCells per rectangle
+    private final IntArray rectangleWidth;
+
+    public final FloatArray positions = new FloatArray();
+    public final IntArray indices = new IntArray();
+
+    public NavMeshTriangulator( WalkableField field ) {
+        this.field = field;
+        int numSpans = field.numSpans;
+        parent = new int[4*numSpans];
+        for(int i = 0; i < parent.length; i++)
+            parent[i] = i;
+        cornerHeight = new float[4*numSpans];
+        isRectangleCorner = new boolean[4*numSpans];
+        rectangleOf = new int[numSpans];
+        java.util.Arrays.fill(rectangleOf, -1);
+        rectangleCells = new IntArray();
+        rectangleStart = new IntArray();
+        rectangleWidth = new IntArray();
+    }
+
+    // maxError: maximum distance in world units of a floor to the plane of its rectangle
+    // maxCells: maximum width and depth of a rectangle
+    public void triangulate( float maxError, int maxCells ) {
+        joinCorners();
+        for(int s = 0; s < field.numSpans; s++) {
+            if(field.isUsed(s) && rectangleOf[s] < 0)
+                growRectangle(s, maxError, maxCells);
+        }
+        int numRectangles = rectangleStart.size;
+        rectangleStart.add(rectangleCells.size);
+        for(int r = 0; r < numRectangles; r++) {
+            int w = rectangleWidth.get(r);
+            int first = rectangleStart.get(r);
+            int h = (rectangleStart.get(r+1) - first) / w;
+            isRectangleCorner[find(4*rectangleCells.get(first))] = true;
+            isRectangleCorner[find(4*rectangleCells.get(first + w-1) + 1)] = true;
+            isRectangleCorner[find(4*rectangleCells.get(first + (h-1)*w + w-1) + 2)] = true;
+            isRectangleCorner[find(4*rectangleCells.get(first + (h-1)*w) + 3)] = true;
+        }
+        IntIntMap vertexIndex = new IntIntMap();
+        IntArray contour = new IntArray();
+        for(int r = 0; r < numRectangles; r++)
+            emitRectangle(r, contour, vertexIndex);
+    }
+
+    public int getNumRectangles() {
+        return rectangleWidth.size;
+    }
+
+    // corners of connected spans are the same vertex
+    private void joinCorners() {
+        for(int s = 0; s < field.numSpans; s++) {
+            if(!field.isUsed(s))
+                continue;
+            int right = field.neighbours[4*s + 2];      // +x
+            if(right != -1) {
+                union(4*s + 1, 4*right);
+                union(4*s + 2, 4*right + 3);
+            }
+            int up = field.neighbours[4*s + 1];         // +z
+            if(up != -1) {
+                union(4*s + 3, 4*up);
+                union(4*s + 2, 4*up + 1);
+            }
+        }
+        for(int i = 0; i < cornerHeight.length; i++)
+            cornerHeight[i] = -Float.MAX_VALUE;
+        for(int s = 0; s < field.numSpans; s++) {
+            if(!field.isUsed(s))
+                continue;
+            float height = field.getFloorHeight(s);
+            for(int k = 0; k < 4; k++) {
+                int root = find(4*s + k);
+                cornerHeight[root] = Math.max(cornerHeight[root], height);
+            }
+        }
+    }
+
+    private int find( int corner ) {
+        while(parent[corner] != corner) {
+            parent[corner] = parent[parent[corner]];
+            corner = parent[corner];
+        }
+        return corner;
+    }
+
+    private void union( int a, int b ) {
+        a = find(a);
+        b = find(b);
+        if(a != b)
+            parent[b] = a;
+    }
+
+    // grow a rectangle from a seed span, first in +x and then row by row in +z, as long as it stays planar
+    private void growRectangle( int seed, float maxError, int maxCells ) {
+        int first = rectangleCells.size;
+        rectangleCells.add(seed);
+        int w = 1;
+        while(w < maxCells) {
+            int next = field.neighbours[4*rectangleCells.peek() + 2];
+            if(!isFree(next, seed))
+                break;
+            rectangleCells.add(next);
+            if(!isPlanar(first, w+1, 1, maxError)) {
+                rectangleCells.pop();
+                break;
+            }
+            w++;
+        }
+        int h = 1;
+        while(h < maxCells) {
+            int rowStart = rectangleCells.size;
+            boolean ok = true;
+            for(int i = 0; i < w && ok; i++) {
+                int below = rectangleCells.get(first + (h-1)*w + i);
+                int cell = field.neighbours[4*below + 1];
+                ok = isFree(cell, seed) && (i == 0 || field.neighbours[4*rectangleCells.peek() + 2] == cell);
+                if(ok)
+                    rectangleCells.add(cell);
+            }
+            if(ok && isPlanar(first, w, h+1, maxError)) {
+                h++;
+                continue;
+            }
+            rectangleCells.size = rowStart;
+            break;
+        }
+        int r = rectangleWidth.size;
+        rectangleStart.add(first);
+        rectangleWidth.add(w);
+        for(int i = first; i < rectangleCells.size; i++)
+            rectangleOf[rectangleCells.get(i)] = r;
+    }
+
+    private boolean isFree( int span, int seed ) {
+        return span != -1 && field.isUsed(span) && rectangleOf[span] < 0 && field.region[span] == field.region[seed];
+    }
+
+    // are the floors of the rectangle and the vertices on its border close to the bilinear surface through its corners?
+    // checking the corners of every cell also covers the vertices of neighbouring rectangles that end up in the contour
+    private boolean isPlanar( int first, int w, int h, float maxError ) {
+        float h00 = cornerHeight[find(4*rectangleCells.get(first))];
+        float h10 = cornerHeight[find(4*rectangleCells.get(first + w-1) + 1)];
+        float h11 = cornerHeight[find(4*rectangleCells.get(first + (h-1)*w + w-1) + 2)];
+        float h01 = cornerHeight[find(4*rectangleCells.get(first + (h-1)*w) + 3)];
+        for(int j = 0; j < h; j++) {
+            for(int i = 0; i < w; i++) {
+                int span = rectangleCells.get(first + j*w + i);
+                if(Math.abs(field.getFloorHeight(span) - surface(h00, h10, h01, h11, (i + 0.5f) / w, (j + 0.5f) / h)) > maxError)
+                    return false;
+                for(int k = 0; k < 4; k++) {
+                    float u = (i + (k == 1 || k == 2 ? 1 : 0)) / (float)w;
+                    float v = (j + (k >= 2 ? 1 : 0)) / (float)h;
+                    if(Math.abs(cornerHeight[find(4*span + k)] - surface(h00, h10, h01, h11, u, v)) > maxError)
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static float surface( float h00, float h10, float h01, float h11, float u, float v ) {
+        return (1-v) * ((1-u) * h00 + u * h10) + v * ((1-u) * h01 + u * h11);
+    }
+
+    // fan of triangles from the centre of the rectangle to each segment of its contour
+    private void emitRectangle( int r, IntArray contour, IntIntMap vertexIndex ) {
+        int w = rectangleWidth.get(r);
+        int first = rectangleStart.get(r);
+        int h = (rectangleStart.get(r+1) - first) / w;
+
+        // walk the contour so that the triangles face up: -x side in +z direction, +z side in +x direction, etc.
+        contour.clear();
+        for(int j = 0; j < h; j++)
+            addContourCorner(contour, 4*rectangleCells.get(first + j*w));
+        for(int i = 0; i < w; i++)
+            addContourCorner(contour, 4*rectangleCells.get(first + (h-1)*w + i) + 3);
+        for(int j = h-1; j >= 0; j--)
+            addContourCorner(contour, 4*rectangleCells.get(first + j*w + w-1) + 2);
+        for(int i = w-1; i >= 0; i--)
+            addContourCorner(contour, 4*rectangleCells.get(first + i) + 1);
+
+        Heightfield hf = field.heightfield;
+        int x0 = field.spanX[rectangleCells.get(first)];
+        int z0 = field.spanZ[rectangleCells.get(first)];
+        // the centre is on the bilinear surface through the corners, which the floors were checked against
+        float centreHeight = (cornerHeight[find(4*rectangleCells.get(first))]
+            + cornerHeight[find(4*rectangleCells.get(first + w-1) + 1)]
+            + cornerHeight[find(4*rectangleCells.get(first + (h-1)*w + w-1) + 2)]
+            + cornerHeight[find(4*rectangleCells.get(first + (h-1)*w) + 3)]) / 4f;
+        int centre = positions.size / 3;
+        positions.add(hf.minX + (x0 + w/2f) * hf.cellSize, centreHeight, hf.minZ + (z0 + h/2f) * hf.cellSize);
+
+        for(int k = 0; k < contour.size; k++) {
+            int a = getVertex(contour.get(k), vertexIndex);
+            int b = getVertex(contour.get((k+1) % contour.size), vertexIndex);
+            indices.add(centre, a, b);
+        }
+    }
+
+    // the contour has the corners of rectangles only, the other corners on the border are in line with them
+    private void addContourCorner( IntArray contour, int corner ) {
+        if(isRectangleCorner[find(corner)])
+            contour.add(corner);
+    }
+
+    private int getVertex( int corner, IntIntMap vertexIndex ) {
+        int root = find(corner);
+        int index = vertexIndex.get(root, -1);
+        if(index < 0) {
+            Heightfield hf = field.heightfield;
+            int span = corner / 4;
+            int k = corner % 4;
+            int x = field.spanX[span] + (k == 1 || k == 2 ? 1 : 0);
+            int z = field.spanZ[span] + (k >= 2 ? 1 : 0);
+            index = positions.size / 3;
+            positions.add(hf.minX + x * hf.cellSize, cornerHeight[root], hf.minZ + z * hf.cellSize);
+            vertexIndex.put(root, index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,232 @@
+package com.monstrous.tut3d.navgen;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+// the walkable surface of a heightfield: per column the open spans, i.e. the floors with enough head room
+// the spans are stored per column in flat arrays (column offsets like a compressed sparse row matrix). Each span is
+// connected to at most one span in each of the 4 neighbouring columns, if an agent can step from one to the other.
+// The spans near walls and ledges are eroded by the agent radius and the rest is divided into regions of connected
+// spans. Building the spans and their connections is done per tile on the fork-join pool.
+
+public class WalkableField {
+    // directions to the neighbour columns: -x, +z, +x, -z
+    static final int[] DX = { -1, 0, 1, 0 };
+    static final int[] DZ = { 0, 1, 0, -1 };
+
+    public final Heightfield heightfield;
+    public final int width, depth;
+    public final int[] columnStart;         // offset into the span arrays per column (x + width * z), one extra entry at the end
+    public final int numSpans;
+    public final int[] floor;               // voxel y of the floor per span
+    public final int[] ceiling;             // voxel y of the next solid span above, Integer.MAX_VALUE if none
+    public final int[] spanX, spanZ;        // column per span
+    public final int[] neighbours;          // 4 per span, the connected span in each direction or -1
+    public final boolean[] removed;         // eroded spans and spans of small regions
+    public final int[] region;              // region id per span from 1, 0 if the span is removed
+    public int numRegions;
+
+    // heights in voxels
+    public WalkableField( Heightfield hf, int agentHeight, int maxClimb, ForkJoinPool pool ) {
+        heightfield = hf;
+        width = hf.width;
+        depth = hf.depth;
+        int numColumns = width * depth;
+        columnStart = new int[numColumns + 1];
+
+        // count the open spans per column, then fill them in
+        pool.invoke(new TileTask(0, hf.tiles.length, tile -> {
+            for(int z = tile.z0; z < tile.z1; z++)
+                for(int x = tile.x0; x < tile.x1; x++)
+                    columnStart[x + width * z + 1] = openSpans(tile, x, z, agentHeight, null, 0);
+        }));
+        for(int c = 0; c < numColumns; c++)
+            columnStart[c+1] += columnStart[c];
+        numSpans = columnStart[numColumns];
+        floor = new int[numSpans];
+        ceiling = new int[numSpans];
+        spanX = new int[numSpans];
+        spanZ = new int[numSpans];
+        neighbours = new int[4 * numSpans];
+        removed = new boolean[numSpans];
+        region = new int[numSpans];
+        pool.invoke(new TileTask(0, hf.tiles.length, tile -> {
+            for(int z = tile.z0; z < tile.z1; z++)
+                for(int x = tile.x0; x < tile.x1; x++)
+                    openSpans(tile, x, z, agentHeight, this, columnStart[x + width * z]);
+        }));
+
+        // connect the spans to the spans of the neighbour columns
+        pool.invoke(new TileTask(0, hf.tiles.length, tile -> {
+            for(int z = tile.z0; z < tile.z1; z++)
+                for(int x = tile.x0; x < tile.x1; x++)
+                    connectColumn(x, z, agentHeight, maxClimb);
+        }));
+    }
+
+    // find the open spans of a column: walkable tops of solid spans with at least agentHeight voxels of head room
+    // if field is not null the spans are stored from the given index, returns the number of open spans
+    private static int openSpans( Heightfield.Tile tile, int x, int z, int agentHeight, WalkableField field, int index ) {
+        int count = 0;
+        for(int s = tile.head[tile.column(x, z)]; s != -1; s = tile.next.get(s)) {
+            if(tile.walkable.get(s) == 0)
+                continue;
+            int next = tile.next.get(s);
+            int top = tile.max.get(s);
+            int above = next == -1 ? Integer.MAX_VALUE : tile.min.get(next);
+            if(above != Integer.MAX_VALUE && above - top < agentHeight)
+                continue;
+            if(field != null) {
+                int span = index + count;
+                field.floor[span] = top;
+                field.ceiling[span] = above;
+                field.spanX[span] = x;
+                field.spanZ[span] = z;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private void connectColumn( int x, int z, int agentHeight, int maxClimb ) {
+        int column = x + width * z;
+        for(int s = columnStart[column]; s < columnStart[column+1]; s++) {
+            for(int dir = 0; dir < 4; dir++) {
+                neighbours[4*s + dir] = -1;
+                int nx = x + DX[dir];
+                int nz = z + DZ[dir];
+                if(nx < 0 || nz < 0 || nx >= width || nz >= depth)
+                    continue;
+                int neighbourColumn = nx + width * nz;
+                int best = -1;
+                int bestClimb = Integer.MAX_VALUE;
+                for(int n = columnStart[neighbourColumn]; n < columnStart[neighbourColumn+1]; n++) {
+                    int climb = Math.abs(floor[n] - floor[s]);
+                    long headRoom = (long)Math.min(ceiling[s], ceiling[n]) - Math.max(floor[s], floor[n]);
+                    if(climb <= maxClimb && headRoom >= agentHeight && climb < bestClimb) {
+                        best = n;
+                        bestClimb = climb;
+                    }
+                }
+                neighbours[4*s + dir] = best;
+            }
+        }
+    }
+
+    // remove the spans that are closer than radius cells to a wall or a ledge
+    public void erode( int radius ) {
+        if(radius <= 0)
+            return;
+        int[] distance = new int[numSpans];
+        IntArray queue = new IntArray();
+        for(int s = 0; s < numSpans; s++) {
+            distance[s] = Integer.MAX_VALUE;
+            for(int dir = 0; dir < 4; dir++) {
+                if(neighbours[4*s + dir] == -1) {
+                    distance[s] = 0;
+                    queue.add(s);
+                    break;
+                }
+            }
+        }
+        for(int head = 0; head < queue.size; head++) {
+            int s = queue.get(head);
+            for(int dir = 0; dir < 4; dir++) {
+                int n = neighbours[4*s + dir];
+                if(n != -1 && distance[n] > distance[s] + 1) {
+                    distance[n] = distance[s] + 1;
+                    queue.add(n);
+                }
+            }
+        }
+        for(int s = 0; s < numSpans; s++)
+            removed[s] |= distance[s] < radius;
+        disconnect();
+    }
+
+    // divide the spans into regions of connected spans, regions smaller than minArea spans are removed
+    public void buildRegions( int minArea ) {
+        IntArray queue = new IntArray();
+        IntArray areas = new IntArray();
+        areas.add(0);
+        int regions = 0;
+        for(int seed = 0; seed < numSpans; seed++) {
+            if(removed[seed] || region[seed] != 0)
+                continue;
+            regions++;
+            region[seed] = regions;
+            queue.clear();
+            queue.add(seed);
+            for(int head = 0; head < queue.size; head++) {
+                int s = queue.get(head);
+                for(int dir = 0; dir < 4; dir++) {
+                    int n = neighbours[4*s + dir];
+                    if(n != -1 && region[n] == 0) {
+                        region[n] = regions;
+                        queue.add(n);
+                    }
+                }
+            }
+            areas.add(queue.size);
+        }
+
+        // renumber the regions that are big enough
+        int[] renumber = new int[regions+1];
+        numRegions = 0;
+        for(int r = 1; r <= regions; r++)
+            renumber[r] = areas.get(r) >= minArea ? ++numRegions : 0;
+        for(int s = 0; s < numSpans; s++) {
+            region[s] = renumber[region[s]];
+            removed[s] |= region[s] == 0;
+        }
+        disconnect();
+    }
+
+    // drop the connections from and to removed spans
+    private void disconnect() {
+        for(int s = 0; s < numSpans; s++) {
+            for(int dir = 0; dir < 4; dir++) {
+                int n = neighbours[4*s + dir];
+                if(removed[s] || (n != -1 && removed[n]))
+                    neighbours[4*s + dir] = -1;
+            }
+        }
+    }
+
+    public boolean isUsed( int span ) {
+        return !removed[span];
+    }
+
+    public float getFloorHeight( int span ) {
+        return heightfield.minY + floor[span] * heightfield.cellHeight;
+    }
+
+    interface TileAction {
+        void run( Heightfield.Tile tile );
+    }
+
+    // runs an action for a range of tiles, split in halves until a single tile is left
+    private class TileTask extends RecursiveAction {
+        private final int first, end;
+        private final TileAction action;
+
+        TileTask( int first, int end, TileAction action ) {
+            this.first = first;
+            this.end = end;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if(end - first > 1) {
+                int mid = (first + end) / 2;
+                invokeAll(new TileTask(first, mid, action), new TileTask(mid, end, action));
+                return;
+            }
+            action.run(heightfield.tiles[first]);
+        }
+    }
+}
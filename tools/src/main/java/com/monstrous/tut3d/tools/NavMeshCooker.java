@@ -0,0 +1,57 @@
+package com.monstrous.tut3d.tools;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.monstrous.tut3d.GltfMeshReader;
+import com.monstrous.tut3d.Settings;
+import com.monstrous.tut3d.nav.NavMesh;
+import com.monstrous.tut3d.nav.NavMeshBuilder;
+import com.monstrous.tut3d.nav.NavMeshFile;
+
+/** Offline tool to cook the nav mesh of a level into a binary nav mesh file.
+ * Arguments (optional): gltf file, nav mesh node name, output file. Paths are relative to the assets folder.
+ * By default the file is written where the game looks for it, see NavMeshFile.getFileName().
+ * A file that was cooked from the same glTF file (see GltfMeshReader.getSourceHash()) is left as it is. */
+public class NavMeshCooker extends ApplicationAdapter {
+    private final String gltfFile;
+    private final String nodeName;
+    private final String outputFile;
+
+    public NavMeshCooker(String gltfFile, String nodeName, String outputFile) {
+        this.gltfFile = gltfFile;
+        this.nodeName = nodeName;
+        this.outputFile = outputFile;
+    }
+
+    public static void main(String[] args) {
+        String gltfFile = args.length > 0 ? args[0] : Settings.GLTF_FILE;
+        String nodeName = args.length > 1 ? args[1] : "NAVMESH";
+        String outputFile = args.length > 2 ? args[2] : NavMeshFile.getFileName(gltfFile, nodeName);
+
+        HeadlessApplicationConfiguration configuration = new HeadlessApplicationConfiguration();
+        configuration.updatesPerSecond = -1;        // we only need create()
+        new HeadlessApplication(new NavMeshCooker(gltfFile, nodeName, outputFile), configuration);
+    }
+
+    @Override
+    public void create() {
+        GltfMeshReader reader = new GltfMeshReader(Gdx.files.local(gltfFile));
+        int sourceHash = reader.getSourceHash();
+        FileHandle output = Gdx.files.local(outputFile);
+        Integer cookedHash = NavMeshFile.readSourceHash(output);
+        if(cookedHash != null && cookedHash == sourceHash) {
+            Gdx.app.log("Nav mesh up to date", output.path());
+            Gdx.app.exit();
+            return;
+        }
+        reader.readNode(nodeName);
+        NavMesh navMesh = NavMeshBuilder.build(reader.positions, reader.indices);
+
+        NavMeshFile.write(navMesh, sourceHash, output);
+        Gdx.app.log("Nav mesh cooked", output.path() + " (" + output.length() + " bytes)");
+        Gdx.app.exit();
+    }
+}